@@ -0,0 +1,80 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Throughput of concurrent accesses to one OS as the number of threads grows. Every thread drives its own process
+ * with random accesses (90% to a hot set that fits in the resident set), so in local and PFF scope the threads only
+ * share the frame allocator and the TLB, while in global scope they also share the replacement policy lock.
+ * Uses a virtual thread per process on Java 21 and newer, a platform thread otherwise.
+ *
+ * Usage: java ConcurrencyScalabilityBenchmark [maxThreads]
+ */
+public class ConcurrencyScalabilityBenchmark {
+    private static final int ACCESSES = 1_000_000; // Per thread
+    private static final int SEGMENT_SIZE = 256 * 1024;
+    private static final int PAGE_SIZE = 1024;
+    private static final int HOT_PAGES = 48;
+
+    public static void main(String[] args) throws Exception {
+        EventLog.setLevel(EventLog.Level.OFF);
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        System.out.println("Threads: " + (virtualThreads() != null ? "virtual" : "platform"));
+
+        for (OS.REPLACE_SCOPE scope : OS.REPLACE_SCOPE.values()) {
+            for (int round = 0; round < 2; round++) { // The first round warms up the JIT
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    double seconds = run(scope, threads);
+                    if (round == 1) {
+                        System.out.printf("%-6s %3d threads: %6.2f M accesses/s%n",
+                                scope, threads, threads * (double) ACCESSES / seconds / 1e6);
+                    }
+                }
+            }
+        }
+    }
+
+    // Runs one process per thread and returns the elapsed time in seconds
+    private static double run(OS.REPLACE_SCOPE scope, int threads) throws Exception {
+        MemoryConfig config = new MemoryConfig(64L * 1024 * 1024, PAGE_SIZE, 4, SEGMENT_SIZE, 64);
+        OS os = new OS(config, scope);
+        for (int t = 0; t < threads; t++) {
+            os.createProcess("P" + t, new int[]{SEGMENT_SIZE});
+        }
+
+        ExecutorService executor = virtualThreads();
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+        long start = System.nanoTime();
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                String id = "P" + t;
+                SplittableRandom random = new SplittableRandom(t);
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < ACCESSES; i++) {
+                        int page = random.nextInt(10) == 0 ? random.nextInt(SEGMENT_SIZE / PAGE_SIZE) : random.nextInt(HOT_PAGES);
+                        os.toPhysicalAddress(id, 0, page * PAGE_SIZE + random.nextInt(PAGE_SIZE));
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() if this Java has virtual threads, null otherwise
+    private static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Microbenchmark for Memory.mallocFrame/freeFrame: allocation cost should not depend on the memory size.
+ * Each run fills all but the top 64 frames, so a scan from frame 0 would have to walk the whole memory,
+ * then repeatedly allocates and frees a resident set of 8 frames.
+ *
+ * Usage: java FrameAllocatorBenchmark
+ */
+public class FrameAllocatorBenchmark {
+    private static final int RESIDENT_SET = 8;
+    private static final int ITERATIONS = 200_000;
+
+    public static void main(String[] args) {
+        EventLog.setLevel(EventLog.Level.OFF);
+
+        int[] sizes = {1 << 10, 1 << 14, 1 << 18, 1 << 20};
+        for (int round = 0; round < 2; round++) { // The first round warms up the JIT
+            for (int frames : sizes) {
+                Memory memory = new Memory(new MemoryConfig((long) frames * 1024, 1024, 4, 16 * 1024, 8));
+                memory.mallocFrame(0, frames - 64);
+
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    memory.freeFrame(memory.mallocFrame(1, RESIDENT_SET));
+                }
+                long scattered = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    memory.freeFrame(memory.mallocContiguousFrame(1, RESIDENT_SET));
+                }
+                long contiguous = System.nanoTime() - start;
+
+                if (round == 1) {
+                    System.out.printf("%8d frames: mallocFrame+freeFrame %6.1f ns/op, mallocContiguousFrame+freeFrame %6.1f ns/op%n",
+                            frames, (double) scattered / ITERATIONS, (double) contiguous / ITERATIONS);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.lang.ref.Reference;
+
+/**
+ * Heap footprint of page tables: the packed PageTable against the former layout of one PageEntry object per page.
+ * Builds the page tables of many processes with the largest segments and reports the retained bytes per page.
+ *
+ * Usage: java PageTableFootprintBenchmark
+ */
+public class PageTableFootprintBenchmark {
+    private static final int PROCESSES = 256;
+    private static final int SEGMENTS = 4;
+    private static final int PAGES_PER_SEGMENT = 1024;
+
+    // Layout of the former per-page object, kept here only for comparison
+    static class LegacyPageEntry {
+        int pageNum;
+        boolean load;
+        int frameNum;
+        int slot;
+        long usedTime;
+        String info;
+
+        LegacyPageEntry(int pageNum) {
+            this.pageNum = pageNum;
+            this.frameNum = -1;
+            this.slot = -1;
+            this.usedTime = -1;
+        }
+    }
+
+    public static void main(String[] args) {
+        long pages = (long) PROCESSES * SEGMENTS * PAGES_PER_SEGMENT;
+
+        long before = usedHeap();
+        Object[] legacy = new Object[PROCESSES * SEGMENTS];
+        for (int i = 0; i < legacy.length; i++) {
+            LegacyPageEntry[] table = new LegacyPageEntry[PAGES_PER_SEGMENT];
+            for (int p = 0; p < table.length; p++) {
+                table[p] = new LegacyPageEntry(p);
+            }
+            legacy[i] = table;
+        }
+        long legacyBytes = usedHeap() - before;
+        Reference.reachabilityFence(legacy);
+        legacy = null;
+
+        before = usedHeap();
+        PageTable[] packed = new PageTable[PROCESSES * SEGMENTS];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = new PageTable(PAGES_PER_SEGMENT);
+        }
+        long packedBytes = usedHeap() - before;
+        Reference.reachabilityFence(packed);
+
+        System.out.printf("%d pages in %d page tables%n", pages, PROCESSES * SEGMENTS);
+        System.out.printf("PageEntry objects: %,d bytes (%.1f bytes/page)%n", legacyBytes, (double) legacyBytes / pages);
+        System.out.printf("PageTable arrays:  %,d bytes (%.1f bytes/page)%n", packedBytes, (double) packedBytes / pages);
+        System.out.printf("Reduction: %.1fx%n", (double) legacyBytes / packedBytes);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
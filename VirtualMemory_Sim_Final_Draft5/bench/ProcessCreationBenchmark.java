@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the initial load strategies of OS.INIT_LOAD: the time to create processes, and the pages loaded when
+ * they are created and afterwards, while each process touches a few pages, mostly in its small segment 0.
+ * Frames hold real contents with a swap file, so every page loaded fills a frame (zeros for a page never written out).
+ *
+ * Usage: java ProcessCreationBenchmark
+ */
+public class ProcessCreationBenchmark {
+    private static final int PROCESSES = 200;
+    private static final int CODE_SIZE = 64 * 1024;      // Segment 0: 16 pages of 4K
+    private static final int SEGMENT_SIZE = 256 * 1024;  // Segments 1 to 3: 64 pages each
+    private static final int ACCESSES = 48;              // Accesses per process after creation
+    private static final String[] CONFIG = {"--memory=64M", "--page=4K", "--segments=4", "--segment-size=256K", "--resident=64"};
+
+    public static void main(String[] args) throws IOException {
+        EventLog.setLevel(EventLog.Level.OFF);
+        Path swap = Files.createTempFile("vmsim-bench", ".swap");
+
+        for (int round = 0; round < 3; round++) { // The first rounds warm up the JIT
+            for (OS.INIT_LOAD mode : OS.INIT_LOAD.values()) {
+                String[] options = Arrays.copyOf(CONFIG, CONFIG.length + 1);
+                options[CONFIG.length] = "--swap=" + swap;
+                OS os = new OS(MemoryConfig.fromArgs(options));
+                os.setInitLoad(mode);
+
+                long start = System.nanoTime();
+                for (int p = 0; p < PROCESSES; p++) {
+                    os.createProcess("P" + p, new int[]{CODE_SIZE, SEGMENT_SIZE, SEGMENT_SIZE, SEGMENT_SIZE});
+                }
+                long elapsed = System.nanoTime() - start;
+                long preloaded = 0;
+                for (PCB process : os.getAllActivePCBs()) {
+                    for (int frameNum : process.residentFrames()) {
+                        if (os.memory.getFrame(frameNum).getPageNumber() >= 0) {
+                            preloaded++;
+                        }
+                    }
+                }
+
+                // Three accesses in four go to segment 0
+                Random random = new Random(42);
+                for (int p = 0; p < PROCESSES; p++) {
+                    for (int i = 0; i < ACCESSES; i++) {
+                        int seg = random.nextInt(4) == 0 ? 1 + random.nextInt(3) : 0;
+                        os.toPhysicalAddress("P" + p, seg, random.nextInt(seg == 0 ? CODE_SIZE : SEGMENT_SIZE));
+                    }
+                }
+                long faults = os.getPageFault();
+                os.close();
+
+                if (round == 2) {
+                    System.out.printf("%-6s create %8.1f us/process, %6d pages loaded at creation, %6d page faults, %6d pages loaded in total%n",
+                            mode.name().toLowerCase(), elapsed / 1e3 / PROCESSES, preloaded, faults, preloaded + faults);
+                }
+            }
+        }
+        Files.deleteIfExists(swap);
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.function.LongSupplier;
+
+/**
+ * The operations measured by the JMH benchmarks in vmsim.jmh, each returned as a LongSupplier that performs one
+ * operation per call. They live here in the unnamed package because the simulator classes do, and code in a named
+ * package cannot refer to those; vmsim.jmh.Workloads looks these factories up by name.
+ *
+ * Every factory takes the memory size (as accepted by --memory=) and builds its own OS or Memory, with the event log off.
+ */
+public class JmhWorkloads {
+    private static final int PAGE_SIZE = 1024;
+    private static final int RESIDENT_SET = 64;
+
+    private JmhWorkloads() {
+    }
+
+    // One process whose pages are all resident: every access is a hit (TLB or page table)
+    public static LongSupplier hitPath(String memory) {
+        OS os = new OS(config(memory, RESIDENT_SET * PAGE_SIZE));
+        os.createProcess("A", new int[]{RESIDENT_SET * PAGE_SIZE});
+        int[] page = {0};
+        return () -> os.toPhysicalAddress("A", 0, (page[0]++ & (RESIDENT_SET - 1)) * PAGE_SIZE);
+    }
+
+    // One process cycling through four times its resident set: every access faults under FIFO, LRU and CLOCK,
+    // and most do under the others
+    public static LongSupplier faultPath(String memory, String policy) {
+        int pages = 4 * RESIDENT_SET;
+        OS os = new OS(config(memory, pages * PAGE_SIZE));
+        os.createProcess("A", new int[]{pages * PAGE_SIZE}, OS.REPLACE_POLICY.parse(policy));
+        int[] page = {0};
+        return () -> os.toPhysicalAddress("A", 0, (page[0]++ % pages) * PAGE_SIZE);
+    }
+
+    // Allocating and freeing a resident set of 8 frames with all but the top 64 frames in use
+    public static LongSupplier allocateFree(String memory) {
+        Memory mem = new Memory(config(memory, RESIDENT_SET * PAGE_SIZE));
+        mem.mallocFrame(0, mem.unusedFrameCount() - RESIDENT_SET);
+        return () -> {
+            int[] frames = mem.mallocFrame(1, 8);
+            mem.freeFrame(frames);
+            return frames[0];
+        };
+    }
+
+    // Creating a process (allocating and preloading its resident set) and destroying it again
+    public static LongSupplier createDestroy(String memory) {
+        OS os = new OS(config(memory, RESIDENT_SET * PAGE_SIZE));
+        int[] segments = {RESIDENT_SET * PAGE_SIZE};
+        return () -> {
+            boolean created = os.createProcess("A", segments);
+            os.destroyProcess("A");
+            return created ? 1 : 0;
+        };
+    }
+
+    private static MemoryConfig config(String memory, int segmentSize) {
+        EventLog.setLevel(EventLog.Level.OFF);
+        return MemoryConfig.fromArgs(new String[]{
+                "--memory=" + memory, "--page=" + PAGE_SIZE, "--segment-size=" + segmentSize, "--resident=" + RESIDENT_SET});
+    }
+}
@@ -0,0 +1,43 @@
+package vmsim.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Memory.mallocFrame and freeFrame of an 8-frame resident set with all but the top 64 frames in use.
+ * Throughput should not depend on the memory size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+    @Param({"1M", "64M", "1G"})
+    public String memory;
+
+    private LongSupplier operation;
+
+    @Setup
+    public void setUp() {
+        operation = Workloads.create("allocateFree", memory);
+    }
+
+    @Benchmark
+    public long allocateFree() {
+        return operation.getAsLong();
+    }
+}
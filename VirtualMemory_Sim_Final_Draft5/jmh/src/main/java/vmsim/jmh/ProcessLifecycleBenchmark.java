@@ -0,0 +1,42 @@
+package vmsim.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * OS.createProcess, which allocates and preloads a 64-page resident set, followed by OS.destroyProcess.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessLifecycleBenchmark {
+    @Param({"1M", "64M", "1G"})
+    public String memory;
+
+    private LongSupplier operation;
+
+    @Setup
+    public void setUp() {
+        operation = Workloads.create("createDestroy", memory);
+    }
+
+    @Benchmark
+    public long createDestroy() {
+        return operation.getAsLong();
+    }
+}
@@ -0,0 +1,46 @@
+package vmsim.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fault-path translation per replacement policy: OS.toPhysicalAddress on a process cycling through four times its
+ * resident set, so each access goes through PCB.replacePage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplacementBenchmark {
+    @Param({"64M"})
+    public String memory;
+
+    @Param({"FIFO", "LRU", "CLOCK", "LFU", "2Q", "ARC"})
+    public String policy;
+
+    private LongSupplier operation;
+
+    @Setup
+    public void setUp() {
+        operation = Workloads.create("faultPath", memory, policy);
+    }
+
+    @Benchmark
+    public long fault() {
+        return operation.getAsLong();
+    }
+}
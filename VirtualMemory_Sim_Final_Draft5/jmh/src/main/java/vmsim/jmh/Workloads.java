@@ -0,0 +1,28 @@
+package vmsim.jmh;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Creates the measured operations through the factories of JmhWorkloads. JMH does not accept benchmarks in the
+ * unnamed package and a named package cannot refer to the simulator classes there, so the benchmarks only see each
+ * operation as a LongSupplier. Its call site is monomorphic, so the JIT inlines it like a direct call.
+ */
+final class Workloads {
+    private Workloads() {
+    }
+
+    /**
+     * @param factory Name of a static factory method of JmhWorkloads.
+     * @param args Its String arguments.
+     */
+    static LongSupplier create(String factory, String... args) {
+        Class<?>[] types = new Class<?>[args.length];
+        Arrays.fill(types, String.class);
+        try {
+            return (LongSupplier) Class.forName("JmhWorkloads").getMethod(factory, types).invoke(null, (Object[]) args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create workload " + factory, e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.Arrays;
+
+/**
+ * Adaptive replacement cache (Megiddo and Modha). Resident pages are split between T1, pages accessed once since
+ * they were loaded, and T2, pages accessed again. The ghost lists B1 and B2 remember the keys of pages recently
+ * evicted from T1 and T2. A fault on a key in B1 means T1 was too small and grows its target size p; a fault on a
+ * key in B2 shrinks it. Victims come from T1 while it is larger than p, otherwise from T2, so the policy moves
+ * between recency and frequency as the workload changes and resists scans like 2Q.
+ */
+public class ArcPolicy implements ReplacementPolicy {
+    private static final int NO_KEY = -1;
+
+    private final LruList t1 = new LruList(0);
+    private final LruList t2 = new LruList(0);
+    private final GhostList b1;
+    private final GhostList b2;
+    private int[] slotKey;
+    private int capacity; // c: the resident set size
+    private int p = 0; // Target size of T1
+    private int adaptedKey = NO_KEY; // Key whose ghost hit selectVictim already adapted p for
+
+    public ArcPolicy(int capacity) {
+        this.capacity = capacity;
+        slotKey = new int[capacity];
+        b1 = new GhostList(capacity);
+        b2 = new GhostList(capacity);
+    }
+
+    @Override
+    public void onLoad(int slot, int pageKey) {
+        if (slot >= capacity) {
+            capacity = slot + 1;
+            if (capacity > slotKey.length) {
+                slotKey = Arrays.copyOf(slotKey, Math.max(capacity, slotKey.length * 2));
+            }
+            b1.ensureCapacity(capacity);
+            b2.ensureCapacity(capacity);
+        }
+        if (pageKey != adaptedKey) {
+            adapt(pageKey);
+        }
+        adaptedKey = NO_KEY;
+        slotKey[slot] = pageKey;
+        if (b1.remove(pageKey) || b2.remove(pageKey)) {
+            t2.touch(slot);
+            return;
+        }
+        // A new page: keep |T1| + |B1| <= c and the whole directory within 2c
+        if (t1.size() + b1.size() >= capacity && b1.size() > 0) {
+            b1.removeOldest();
+        } else if (t1.size() + t2.size() + b1.size() + b2.size() >= 2 * capacity && b2.size() > 0) {
+            b2.removeOldest();
+        }
+        t1.touch(slot);
+    }
+
+    @Override
+    public void onHit(int slot) {
+        t1.remove(slot);
+        t2.touch(slot);
+    }
+
+    @Override
+    public void onEvict(int slot) {
+        if (t1.contains(slot)) {
+            t1.remove(slot);
+            b1.add(slotKey[slot]);
+        } else if (t2.contains(slot)) {
+            t2.remove(slot);
+            b2.add(slotKey[slot]);
+        }
+    }
+
+    @Override
+    public int selectVictim(int incomingKey) {
+        adapt(incomingKey);
+        adaptedKey = incomingKey;
+        int t1Size = t1.size();
+        if (t1Size > 0 && (t1Size > p || (t1Size == p && b2.contains(incomingKey)) || t2.size() == 0)) {
+            return t1.eldest();
+        }
+        return t2.eldest();
+    }
+
+    // Moves the target size of T1 towards the list whose ghost the key was found in
+    private void adapt(int key) {
+        if (b1.contains(key)) {
+            p = Math.min(capacity, p + Math.max(b2.size() / b1.size(), 1));
+        } else if (b2.contains(key)) {
+            p = Math.max(0, p - Math.max(b1.size() / b2.size(), 1));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs a Workload on a background thread, at full speed until paused or a given number of steps at a time, so a
+ * front end only has to sample the OS's state at its own pace. Runs and steps are queued on one thread, so the
+ * workload's records are performed in order.
+ *
+ * When the workload is exhausted or fails, the runner stops and the stop listener is called on the runner's thread
+ * with the failure, or null if the workload ended.
+ */
+public class AutoRunner {
+    private static final int BATCH = 1024; // Steps between checks for a pause
+    private static final int SHUTDOWN_WAIT_SECONDS = 5;
+
+    private final Workload workload;
+    private final Consumer<Exception> onStopped;
+    private final ExecutorService executor;
+    private volatile boolean running;
+    private volatile boolean finished;
+
+    /**
+     * @param workload The workload to run; closed by shutdown.
+     * @param onStopped Called when the workload is exhausted (with null) or fails (with the exception).
+     */
+    public AutoRunner(Workload workload, Consumer<Exception> onStopped) {
+        this.workload = workload;
+        this.onStopped = onStopped;
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "auto-run");
+            thread.setDaemon(true); // Must not keep the application alive
+            return thread;
+        });
+    }
+
+    // Runs the workload until pause is called or it ends
+    public void run() {
+        if (finished || running) {
+            return;
+        }
+        running = true;
+        executor.execute(() -> {
+            while (running && steps(BATCH)) {
+            }
+        });
+    }
+
+    // Stops a run after the step in progress
+    public void pause() {
+        running = false;
+    }
+
+    // Performs the next n steps of the workload, after those already queued; ignored while running
+    public void step(int n) {
+        if (!finished && !running) {
+            executor.execute(() -> steps(n));
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Whether the workload was exhausted or failed, or the runner shut down
+    public boolean isFinished() {
+        return finished;
+    }
+
+    // Stops the runner for good, waits for the batch of steps in progress and closes the workload
+    public void shutdown() {
+        running = false;
+        finished = true;
+        executor.execute(workload::close);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Performs up to n steps; returns false once the workload has stopped
+    private boolean steps(int n) {
+        if (finished) {
+            return false;
+        }
+        try {
+            for (int i = 0; i < n; i++) {
+                if (!workload.step()) {
+                    stop(null);
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            stop(e);
+            return false;
+        }
+    }
+
+    private void stop(Exception failure) {
+        finished = true;
+        running = false;
+        onStopped.accept(failure);
+    }
+}
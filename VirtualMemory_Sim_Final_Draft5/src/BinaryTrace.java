@@ -0,0 +1,306 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Reader of binary traces, the compact form of the text traces of TraceReplayer, written by BinaryTraceWriter.
+ *
+ * Layout (big-endian):
+ *   header      "VMTB", version, offset of the dictionary, offset of the index, record count, block count
+ *   blocks      each: payload length, record count, CRC32C of the payload, then the payload
+ *   dictionary  the processes, by process number (pid) in creation order: name and segment sizes, or no segments
+ *               for a name accessed without being created
+ *   index       each block's file offset, first record number and record count
+ *   CRC32C of the dictionary and the index
+ *
+ * A record starts with a varint holding the kind (read, write, create, destroy) in its two low bits and the
+ * zigzag-encoded difference from the previous record's pid above them. An access then holds its segment number and
+ * the zigzag difference from the previous offset accessed in that segment of that process. Differences start over
+ * at each block, so every block can be decoded on its own: the index lets readers seek to any block, or split the
+ * blocks between threads (see BinaryTraceReplayer.replayParallel).
+ */
+public class BinaryTrace implements Closeable {
+    static final int MAGIC = 0x564D5442; // "VMTB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 36;
+    static final int BLOCK_HEADER_SIZE = 12;
+    static final int INDEX_ENTRY_SIZE = 20;
+
+    // Record kinds, the two low bits of a record's first varint
+    static final int READ = 0;
+    static final int WRITE = 1;
+    static final int CREATE = 2;
+    static final int DESTROY = 3;
+
+    private final FileChannel channel;
+    private final long recordCount;
+    private final long dictionaryOffset; // Where the blocks end
+    private final String[] names;   // By pid
+    private final int[][] segments; // By pid, null for a process that was never created
+    private final long[] blockOffsets;
+    private final long[] blockFirstRecords;
+    private final int[] blockRecordCounts;
+
+    private BinaryTrace(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = read(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a binary trace");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary trace version " + version);
+        }
+        dictionaryOffset = header.getLong();
+        long indexOffset = header.getLong();
+        recordCount = header.getLong();
+        int blockCount = header.getInt();
+        if (dictionaryOffset == 0) {
+            throw new IOException("Binary trace was not closed");
+        }
+        // The footer must lie within the file: the dictionary, the index of blockCount entries, then the checksum
+        long size = channel.size();
+        if (dictionaryOffset < HEADER_SIZE || indexOffset < dictionaryOffset || blockCount < 0
+                || indexOffset + (long) blockCount * INDEX_ENTRY_SIZE + 4 > size || size - dictionaryOffset > Integer.MAX_VALUE) {
+            throw new IOException("Binary trace is truncated");
+        }
+
+        // The dictionary and the index run to the checksum at the end of the file
+        ByteBuffer footer = read(dictionaryOffset, (int) (channel.size() - dictionaryOffset));
+        CRC32C crc = new CRC32C();
+        crc.update(footer.duplicate().limit(footer.limit() - 4));
+        if ((int) crc.getValue() != footer.getInt(footer.limit() - 4)) {
+            throw new IOException("Binary trace dictionary or index is corrupt");
+        }
+        int processCount = (int) readVarLong(footer);
+        names = new String[processCount];
+        segments = new int[processCount][];
+        for (int pid = 0; pid < processCount; pid++) {
+            byte[] name = new byte[(int) readVarLong(footer)];
+            footer.get(name);
+            names[pid] = new String(name, StandardCharsets.UTF_8);
+            int count = (int) readVarLong(footer) - 1;
+            if (count >= 0) {
+                segments[pid] = new int[count];
+                for (int s = 0; s < count; s++) {
+                    segments[pid][s] = (int) readVarLong(footer);
+                }
+            }
+        }
+        footer.position((int) (indexOffset - dictionaryOffset));
+        if (footer.remaining() - 4 != blockCount * INDEX_ENTRY_SIZE) {
+            throw new IOException("Binary trace index does not match its block count");
+        }
+        blockOffsets = new long[blockCount];
+        blockFirstRecords = new long[blockCount];
+        blockRecordCounts = new int[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            blockOffsets[b] = footer.getLong();
+            blockFirstRecords[b] = footer.getLong();
+            blockRecordCounts[b] = footer.getInt();
+        }
+    }
+
+    /**
+     * Opens a binary trace and reads its dictionary and index.
+     *
+     * @throws IOException If the file cannot be read, or is not a complete binary trace.
+     */
+    public static BinaryTrace open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new BinaryTrace(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Whether the file starts like a binary trace, so callers can accept both text and binary traces
+    public static boolean isBinaryTrace(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    // Number of the first record of the block, counting from 0 across the trace, and the block's record count
+    public long getFirstRecord(int block) {
+        return blockFirstRecords[block];
+    }
+
+    public int getRecordCount(int block) {
+        return blockRecordCounts[block];
+    }
+
+    public int getProcessCount() {
+        return names.length;
+    }
+
+    public String getName(int pid) {
+        return names[pid];
+    }
+
+    // Segment sizes the process was created with, null if the trace accesses it without creating it
+    public int[] getSegments(int pid) {
+        return segments[pid];
+    }
+
+    /**
+     * Returns a cursor over the records of blocks first (inclusive) to end (exclusive). Cursors of one trace can be
+     * used by different threads at the same time.
+     */
+    public Cursor cursor(int first, int end) {
+        return new Cursor(first, end);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(position, buffer);
+        return buffer.flip();
+    }
+
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Binary trace is truncated");
+            }
+        }
+    }
+
+    /**
+     * Decodes the records of a range of blocks one at a time, into its fields: after next returns true, kind and pid
+     * describe the record, and segment and offset an access. Each block is read and its checksum checked when the
+     * cursor reaches it. Decoding allocates nothing, except to grow the block buffer.
+     */
+    public class Cursor {
+        public int kind;    // READ, WRITE, CREATE or DESTROY
+        public int pid;
+        public int segment;
+        public int offset;
+
+        private int block;
+        private final int end;
+        private ByteBuffer payload = ByteBuffer.allocate(0);
+        private final ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        private final CRC32C crc = new CRC32C();
+        private final int[][] lastOffset = new int[names.length][]; // By pid and segment, see BinaryTraceWriter
+        private final int[] epochOf = new int[names.length];           // Block in which lastOffset[pid] was last reset
+        private int epoch; // Current block + 1
+
+        Cursor(int first, int end) {
+            this.block = first - 1;
+            this.end = end;
+            for (int pid = 0; pid < names.length; pid++) {
+                lastOffset[pid] = new int[segments[pid] == null ? 0 : segments[pid].length];
+            }
+        }
+
+        /**
+         * Decodes the next record.
+         *
+         * @return False after the last record of the range.
+         * @throws IOException If a block cannot be read or fails its checksum.
+         */
+        public boolean next() throws IOException {
+            while (!payload.hasRemaining()) {
+                if (++block >= end) {
+                    return false;
+                }
+                loadBlock();
+            }
+            long head = readVarLong(payload);
+            kind = (int) (head & 3);
+            pid += (int) zigzagDecode(head >>> 2);
+            if (kind == READ || kind == WRITE) {
+                segment = (int) readVarLong(payload);
+                int delta = (int) zigzagDecode(readVarLong(payload));
+                int[] last = lastOffset[pid];
+                if (segment >= 0 && segment < last.length) {
+                    if (epochOf[pid] != epoch) {
+                        Arrays.fill(last, 0);
+                        epochOf[pid] = epoch;
+                    }
+                    offset = last[segment] + delta;
+                    last[segment] = offset;
+                } else {
+                    offset = delta; // Not a segment of the process: the offset is stored as is
+                }
+            }
+            return true;
+        }
+
+        private void loadBlock() throws IOException {
+            blockHeader.clear();
+            readFully(blockOffsets[block], blockHeader);
+            int length = blockHeader.getInt(0);
+            int checksum = blockHeader.getInt(8);
+            if (length < 0 || blockOffsets[block] + BLOCK_HEADER_SIZE + length > dictionaryOffset) {
+                throw new IOException("Block " + block + " of the binary trace is corrupt");
+            }
+            if (payload.capacity() < length) {
+                payload = ByteBuffer.allocate(length);
+            }
+            payload.clear().limit(length);
+            readFully(blockOffsets[block] + BLOCK_HEADER_SIZE, payload);
+            payload.flip();
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch in block " + block + " of the binary trace");
+            }
+            pid = 0;
+            epoch = block + 1;
+        }
+    }
+
+    static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint in binary trace");
+    }
+
+    // Maps small negative and positive numbers to small unsigned ones: 0, -1, 1, -2... to 0, 1, 2, 3...
+    static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays a binary trace (see BinaryTrace) into an OS: record by record as a Workload, or split between threads by
+ * replayParallel. Processes are created and destroyed as the trace says, like TraceReplayer does for text traces.
+ */
+public class BinaryTraceReplayer implements Workload {
+    private final OS os;
+    private final BinaryTrace trace;
+    private final BinaryTrace.Cursor cursor;
+    private final PCB[] processes; // By pid: the process accessed under that pid, null before it is created
+
+    private long accesses; // Access records replayed
+    private long rejected; // Access records the OS refused (unknown process, bad segment or offset)
+
+    public BinaryTraceReplayer(OS os, BinaryTrace trace) {
+        this.os = os;
+        this.trace = trace;
+        this.cursor = trace.cursor(0, trace.getBlockCount());
+        this.processes = new PCB[trace.getProcessCount()];
+    }
+
+    /**
+     * Replays the next record.
+     *
+     * @return False after the last record.
+     * @throws IOException If a block cannot be read or fails its checksum.
+     */
+    @Override
+    public boolean step() throws IOException {
+        if (!cursor.next()) {
+            return false;
+        }
+        int pid = cursor.pid;
+        switch (cursor.kind) {
+            case BinaryTrace.CREATE:
+                processes[pid] = create(pid);
+                break;
+            case BinaryTrace.DESTROY:
+                os.destroyProcess(trace.getName(pid));
+                processes[pid] = null;
+                break;
+            default:
+                accesses++;
+                PCB process = processes[pid];
+                OS.ACCESS_TYPE type = cursor.kind == BinaryTrace.WRITE ? OS.ACCESS_TYPE.WRITE : OS.ACCESS_TYPE.READ;
+                if (process == null || os.toPhysicalAddress(process, cursor.segment, cursor.offset, type) < 0) {
+                    rejected++;
+                }
+        }
+        return true;
+    }
+
+    /**
+     * Replays the whole trace with the blocks split into one run of consecutive blocks per thread, of about the same
+     * number of records each. Every process of the trace is created first, and destructions are skipped, since the
+     * threads do not replay the records in their original order; the faults can differ from a sequential replay.
+     *
+     * @throws IOException If a block cannot be read or fails its checksum.
+     */
+    public void replayParallel(int threads) throws IOException {
+        for (int pid = 0; pid < processes.length; pid++) {
+            if (trace.getSegments(pid) != null) {
+                processes[pid] = create(pid);
+            }
+        }
+
+        List<int[]> ranges = new ArrayList<>(); // First and end block of each thread
+        long perThread = Math.max(1, trace.getRecordCount() / threads);
+        int first = 0;
+        for (int block = 0; block < trace.getBlockCount(); block++) {
+            long recordsAfter = trace.getFirstRecord(block) + trace.getRecordCount(block);
+            if (recordsAfter >= perThread * (ranges.size() + 1) || block == trace.getBlockCount() - 1) {
+                ranges.add(new int[]{first, block + 1});
+                first = block + 1;
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, ranges.size()));
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int[] range : ranges) {
+                results.add(executor.submit(() -> replayAccesses(trace.cursor(range[0], range[1]))));
+            }
+            for (Future<long[]> result : results) {
+                long[] counts = result.get();
+                accesses += counts[0];
+                rejected += counts[1];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Parallel replay interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Parallel replay failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Replays the access records of the cursor's blocks; returns the accesses replayed and those rejected
+    private long[] replayAccesses(BinaryTrace.Cursor blocks) throws IOException {
+        long done = 0;
+        long refused = 0;
+        while (blocks.next()) {
+            if (blocks.kind == BinaryTrace.READ || blocks.kind == BinaryTrace.WRITE) {
+                done++;
+                PCB process = processes[blocks.pid];
+                OS.ACCESS_TYPE type = blocks.kind == BinaryTrace.WRITE ? OS.ACCESS_TYPE.WRITE : OS.ACCESS_TYPE.READ;
+                if (process == null || os.toPhysicalAddress(process, blocks.segment, blocks.offset, type) < 0) {
+                    refused++;
+                }
+            }
+        }
+        return new long[]{done, refused};
+    }
+
+    // Creates the process of the pid. If the OS refuses, e.g. because a process of that name exists, the accesses go
+    // to the process of that name, if any, as in a text trace.
+    private PCB create(int pid) {
+        String name = trace.getName(pid);
+        os.createProcess(name, trace.getSegments(pid));
+        return os.getProcesses().get(name);
+    }
+
+    public long getAccesses() {
+        return accesses;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+}
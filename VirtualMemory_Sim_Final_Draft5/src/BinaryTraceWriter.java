@@ -0,0 +1,204 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes a binary trace (see BinaryTrace for the format). Processes are numbered (pid) in the order they are created
+ * or declared; records are buffered into blocks of about BLOCK_SIZE bytes, and the dictionary, the index and the
+ * header are written by close. Not thread-safe, see TraceRecorder.
+ */
+public class BinaryTraceWriter implements Closeable {
+    private static final int BLOCK_SIZE = 64 * 1024; // Payload bytes after which a block is written
+    private static final int MAX_RECORD_SIZE = 32;    // Three varints of at most 10 bytes
+
+    private final FileChannel channel;
+    private final ByteBuffer payload = ByteBuffer.allocate(BLOCK_SIZE + MAX_RECORD_SIZE);
+    private final ByteBuffer blockHeader = ByteBuffer.allocate(BinaryTrace.BLOCK_HEADER_SIZE);
+    private final CRC32C crc = new CRC32C();
+    private long position = BinaryTrace.HEADER_SIZE; // Where the next block goes
+
+    private final List<String> names = new ArrayList<>();
+    private final List<int[]> segments = new ArrayList<>();
+    private int[][] lastOffset = new int[16][]; // Offset of the last access to each segment of each pid, in this block
+    private int[] epochOf = new int[16];        // Block in which lastOffset[pid] was last reset, see BinaryTrace.Cursor
+    private int epoch = 1;                      // Current block + 1
+    private int prevPid;
+
+    private long records;
+    private int blockRecords;
+    private ByteBuffer index = ByteBuffer.allocate(BinaryTrace.INDEX_ENTRY_SIZE * 64); // Entries of the blocks written
+    private int blockCount;
+
+    /**
+     * Creates or truncates the file.
+     *
+     * @throws IOException If the file cannot be opened for writing.
+     */
+    public BinaryTraceWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        writeHeader(0, 0); // No dictionary yet: readers see a trace that was not closed
+    }
+
+    /**
+     * Records the creation of a process, which gets the next pid.
+     *
+     * @param segments Sizes of the process's segments.
+     * @return The pid of the process.
+     */
+    public int create(String name, int[] segments) throws IOException {
+        int pid = addProcess(name, segments.clone());
+        record(pid, BinaryTrace.CREATE);
+        return pid;
+    }
+
+    /**
+     * Gives a pid to a process name that is accessed without being created, e.g. by a trace line naming an unknown
+     * process. Nothing is recorded; replays reject its accesses.
+     */
+    public int declare(String name) {
+        return addProcess(name, null);
+    }
+
+    public void destroy(int pid) throws IOException {
+        record(pid, BinaryTrace.DESTROY);
+    }
+
+    // Records an access to the offset of the segment of the process, a write if write is true
+    public void access(int pid, int segment, int offset, boolean write) throws IOException {
+        record(pid, write ? BinaryTrace.WRITE : BinaryTrace.READ);
+        BinaryTrace.writeVarLong(payload, segment);
+        int[] last = lastOffset[pid];
+        if (last != null && segment >= 0 && segment < last.length) {
+            if (epochOf[pid] != epoch) {
+                Arrays.fill(last, 0);
+                epochOf[pid] = epoch;
+            }
+            BinaryTrace.writeVarLong(payload, BinaryTrace.zigzagEncode((long) offset - last[segment]));
+            last[segment] = offset;
+        } else {
+            BinaryTrace.writeVarLong(payload, BinaryTrace.zigzagEncode(offset));
+        }
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    private int addProcess(String name, int[] segments) {
+        int pid = names.size();
+        names.add(name);
+        this.segments.add(segments);
+        if (pid == lastOffset.length) {
+            lastOffset = Arrays.copyOf(lastOffset, pid * 2);
+            epochOf = Arrays.copyOf(epochOf, pid * 2);
+        }
+        lastOffset[pid] = segments == null ? null : new int[segments.length];
+        return pid;
+    }
+
+    // Starts a record, in a new block if the current one is full: its kind and the difference from the previous record's pid
+    private void record(int pid, int kind) throws IOException {
+        if (payload.position() >= BLOCK_SIZE) {
+            writeBlock();
+        }
+        BinaryTrace.writeVarLong(payload, BinaryTrace.zigzagEncode((long) pid - prevPid) << 2 | kind);
+        prevPid = pid;
+        records++;
+        blockRecords++;
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockRecords == 0) {
+            return;
+        }
+        payload.flip();
+        crc.reset();
+        crc.update(payload.duplicate());
+        blockHeader.clear();
+        blockHeader.putInt(payload.remaining()).putInt(blockRecords).putInt((int) crc.getValue()).flip();
+        if (index.remaining() < BinaryTrace.INDEX_ENTRY_SIZE) {
+            index = ByteBuffer.allocate(index.capacity() * 2).put(index.flip());
+        }
+        index.putLong(position).putLong(records - blockRecords).putInt(blockRecords);
+        blockCount++;
+
+        position += writeFully(blockHeader, position);
+        position += writeFully(payload, position);
+        payload.clear();
+        blockRecords = 0;
+        prevPid = 0; // Blocks decode on their own
+        epoch++;
+    }
+
+    /**
+     * Writes the last block, the dictionary, the index and the header, then closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+            long dictionaryOffset = position;
+            ByteBuffer dictionary = ByteBuffer.allocate(dictionarySize());
+            BinaryTrace.writeVarLong(dictionary, names.size());
+            for (int pid = 0; pid < names.size(); pid++) {
+                byte[] name = names.get(pid).getBytes(StandardCharsets.UTF_8);
+                BinaryTrace.writeVarLong(dictionary, name.length);
+                dictionary.put(name);
+                int[] sizes = segments.get(pid);
+                BinaryTrace.writeVarLong(dictionary, sizes == null ? 0 : sizes.length + 1);
+                if (sizes != null) {
+                    for (int size : sizes) {
+                        BinaryTrace.writeVarLong(dictionary, size);
+                    }
+                }
+            }
+            dictionary.flip();
+            index.flip();
+            crc.reset();
+            crc.update(dictionary.duplicate());
+            crc.update(index.duplicate());
+            long indexOffset = dictionaryOffset + dictionary.remaining();
+            position += writeFully(dictionary, position);
+            position += writeFully(index, position);
+            position += writeFully(ByteBuffer.allocate(4).putInt(0, (int) crc.getValue()), position);
+
+            // The header last, so a trace cut short by a crash is recognised as not closed
+            writeHeader(dictionaryOffset, indexOffset);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeHeader(long dictionaryOffset, long indexOffset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BinaryTrace.HEADER_SIZE);
+        header.putInt(BinaryTrace.MAGIC).putInt(BinaryTrace.VERSION).putLong(dictionaryOffset).putLong(indexOffset)
+                .putLong(records).putInt(blockCount).flip();
+        writeFully(header, 0);
+    }
+
+    // Upper bound of the dictionary's size in bytes
+    private int dictionarySize() {
+        int size = 10;
+        for (int pid = 0; pid < names.size(); pid++) {
+            int[] sizes = segments.get(pid);
+            size += 20 + names.get(pid).length() * 3 + (sizes == null ? 0 : sizes.length * 5);
+        }
+        return size;
+    }
+
+    private int writeFully(ByteBuffer buffer, long at) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, at + written);
+        }
+        return written;
+    }
+}
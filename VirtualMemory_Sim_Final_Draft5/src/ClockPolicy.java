@@ -0,0 +1,61 @@
+import java.util.Arrays;
+
+/**
+ * Clock (second chance): the slots form a circle swept by a hand. A page gets a reference bit on every access;
+ * the hand clears set bits as it passes and stops at the first resident page without one.
+ * Approximates LRU with O(1) work per access and no list updates on hits.
+ */
+public class ClockPolicy implements ReplacementPolicy {
+    private boolean[] resident;
+    private boolean[] referenced;
+    private int slots = 0; // One past the highest slot ever loaded, the extent of the circle
+    private int hand = 0;
+
+    public ClockPolicy(int capacity) {
+        resident = new boolean[capacity];
+        referenced = new boolean[capacity];
+    }
+
+    @Override
+    public void onLoad(int slot, int pageKey) {
+        if (slot >= resident.length) {
+            int capacity = Math.max(slot + 1, resident.length * 2);
+            resident = Arrays.copyOf(resident, capacity);
+            referenced = Arrays.copyOf(referenced, capacity);
+        }
+        slots = Math.max(slots, slot + 1);
+        resident[slot] = true;
+        referenced[slot] = true;
+    }
+
+    @Override
+    public void onHit(int slot) {
+        referenced[slot] = true;
+    }
+
+    @Override
+    public void onEvict(int slot) {
+        resident[slot] = false;
+        referenced[slot] = false;
+    }
+
+    @Override
+    public int selectVictim(int incomingKey) {
+        if (slots == 0) {
+            return -1;
+        }
+        // At most two sweeps: the first clears every reference bit it passes
+        for (int i = 0; i < 2 * slots + 1; i++) {
+            int slot = hand;
+            hand = hand + 1 == slots ? 0 : hand + 1;
+            if (!resident[slot]) {
+                continue;
+            }
+            if (!referenced[slot]) {
+                return slot;
+            }
+            referenced[slot] = false;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Level-gated event log of the simulator, replacing System.out.println on the translation path.
+ *
+ * A call whose level is disabled returns after one comparison: events carry only an Event constant, the process id
+ * and primitive arguments, so nothing is formatted by the caller. Enabled events are copied into a fixed-layout slot
+ * of a lock-free ring buffer and formatted by a background writer thread, which writes them in batches through a
+ * buffered writer on System.out. When the ring stays empty the writer parks until the next event unparks it, so an
+ * idle simulator costs no CPU.
+ */
+public class EventLog {
+    public enum Level { OFF, ERROR, INFO, DEBUG }
+
+    public enum Event {
+        MESSAGE,                // detail
+        PROCESS_CREATED,        // process
+        PROCESS_CREATE_FAILED,  // process, detail: reason
+        PROCESS_DESTROYED,      // process
+        NO_SUCH_PROCESS,        // process
+        NO_SUCH_SEGMENT,        // process, a: segment
+        NO_SUCH_PAGE,           // process, a: segment, b: page
+        OFFSET_OUT_OF_BOUNDS,   // process, a: segment, b: segment offset
+        TRANSLATED,             // process, a: segment, b: segment offset, c: physical address
+        PAGE_FAULT,             // process, a: segment, b: page
+        PAGE_IN,                // process, a: segment, b: page, c: frame
+        PAGE_OUT,               // process, a: segment, b: page, c: frame
+        PAGE_DROPPED,           // process, a: segment, b: page, c: frame (a clean page evicted without a write)
+        PAGE_PREFETCHED,        // process, a: segment, b: page (loaded by read-ahead, after its PAGE_IN)
+        FRAMES_ALLOCATED,       // process, a: number of frames, b: first frame if contiguous, otherwise -1
+        FRAMES_RELEASED,        // process, a: number of frames, b: resident set size afterwards
+        REQUEST_COUNTS          // a: total requests, b: page faults
+    }
+
+    private static final int CAPACITY = 1 << 14; // Slots in the ring buffer, a power of 2
+    private static final int MASK = CAPACITY - 1;
+    private static final Event[] EVENTS = Event.values();
+    private static final int IDLE_POLLS = 20; // Short parks of the writer on an empty ring before it parks until woken
+    private static final long POLL_NANOS = 50_000;
+
+    private static volatile Level level = Level.INFO;
+
+    // Ring buffer slots. sequence[i] == n + 1 means slot i holds the record published at position n,
+    // sequence[i] == n means the slot is free for position n (bounded MPSC queue with per-slot sequence numbers).
+    private static final AtomicLongArray sequence = new AtomicLongArray(CAPACITY);
+    private static final int[] events = new int[CAPACITY];
+    private static final String[] processes = new String[CAPACITY];
+    private static final String[] details = new String[CAPACITY];
+    private static final long[] argA = new long[CAPACITY];
+    private static final long[] argB = new long[CAPACITY];
+    private static final long[] argC = new long[CAPACITY];
+
+    private static final AtomicLong tail = new AtomicLong(0); // Next position to publish
+    private static volatile long written = 0; // Every record before this position has been written and flushed
+    private static final AtomicBoolean started = new AtomicBoolean(false);
+    private static volatile Thread writer;
+    private static volatile boolean sleeping = false; // The writer is parked until a producer unparks it
+    private static final Object flushLock = new Object(); // Notified when written moves while flush waits on it
+    private static volatile int flushWaiters = 0;         // Threads waiting in flush, changed under flushLock
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequence.set(i, i);
+        }
+    }
+
+    private EventLog() {
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets the level from a --log=OFF|ERROR|INFO|DEBUG argument, or to defaultLevel if there is none.
+     *
+     * @throws IllegalArgumentException If the level name is unknown.
+     */
+    public static void configure(String[] args, Level defaultLevel) {
+        Level l = defaultLevel;
+        for (String arg : args) {
+            if (arg.startsWith("--log=")) {
+                l = Level.valueOf(arg.substring("--log=".length()).trim().toUpperCase());
+            }
+        }
+        level = l;
+    }
+
+    public static boolean isEnabled(Level l) {
+        return l.ordinal() <= level.ordinal();
+    }
+
+    /**
+     * Logs an event with numeric arguments (see Event for their meaning). Costs nothing beyond the level check when disabled.
+     */
+    public static void log(Level l, Event event, String process, long a, long b, long c) {
+        if (l.ordinal() <= level.ordinal() && l != Level.OFF) {
+            publish(event, process, null, a, b, c);
+        }
+    }
+
+    /**
+     * Logs an event with a text detail. Meant for rare events such as errors, whose detail may be built by the caller.
+     */
+    public static void log(Level l, Event event, String process, String detail) {
+        if (l.ordinal() <= level.ordinal() && l != Level.OFF) {
+            publish(event, process, detail, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Blocks until every event logged so far has been written out. Used before printing anything else on the console.
+     */
+    public static void flush() {
+        long target = tail.get();
+        if (written >= target) {
+            return;
+        }
+        boolean interrupted = false;
+        synchronized (flushLock) {
+            flushWaiters++;
+            try {
+                while (written < target) {
+                    try {
+                        flushLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                flushWaiters--;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void publish(Event event, String process, String detail, long a, long b, long c) {
+        if (!started.get() && started.compareAndSet(false, true)) {
+            startWriter();
+        }
+
+        long position;
+        int i;
+        while (true) {
+            position = tail.get();
+            i = (int) (position & MASK);
+            long seq = sequence.get(i);
+            if (seq == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (seq < position) {
+                Thread.yield(); // Ring is full, wait for the writer
+            }
+        }
+
+        events[i] = event.ordinal();
+        processes[i] = process;
+        details[i] = detail;
+        argA[i] = a;
+        argB[i] = b;
+        argC[i] = c;
+        sequence.set(i, position + 1); // Publish the slot to the writer
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private static void startWriter() {
+        Thread thread = new Thread(EventLog::drain, "event-log-writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(EventLog::flush));
+    }
+
+    // Writer thread: formats published records in order and flushes whenever the ring runs empty
+    private static void drain() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        StringBuilder sb = new StringBuilder(256);
+        long head = 0;
+        boolean dirty = false;
+        int idlePolls = 0;
+        while (true) {
+            int i = (int) (head & MASK);
+            if (sequence.get(i) == head + 1) {
+                sb.setLength(0);
+                format(sb, EVENTS[events[i]], processes[i], details[i], argA[i], argB[i], argC[i]);
+                processes[i] = null;
+                details[i] = null;
+                sequence.set(i, head + CAPACITY); // Free the slot for the next lap
+                head++;
+                try {
+                    out.append(sb).append(System.lineSeparator());
+                } catch (IOException e) {
+                    // Console gone, keep draining so producers never block
+                }
+                dirty = true;
+                idlePolls = 0;
+            } else {
+                if (dirty) {
+                    try {
+                        out.flush();
+                    } catch (IOException e) {
+                        // Ignored as above
+                    }
+                    dirty = false;
+                }
+                written = head;
+                if (flushWaiters > 0) {
+                    synchronized (flushLock) {
+                        flushLock.notifyAll();
+                    }
+                }
+                if (++idlePolls < IDLE_POLLS) {
+                    LockSupport.parkNanos(POLL_NANOS);
+                } else {
+                    // Announce the sleep before checking the ring again: a producer publishing meanwhile sees
+                    // sleeping and unparks the writer, so no event waits for the next one
+                    sleeping = true;
+                    if (sequence.get(i) != head + 1) {
+                        LockSupport.park();
+                    }
+                    sleeping = false;
+                    idlePolls = 0;
+                }
+            }
+        }
+    }
+
+    private static void format(StringBuilder sb, Event event, String process, String detail, long a, long b, long c) {
+        switch (event) {
+            case MESSAGE:
+                sb.append(detail);
+                break;
+            case PROCESS_CREATED:
+                sb.append("Process creation successful: ").append(process);
+                break;
+            case PROCESS_CREATE_FAILED:
+                sb.append("Failed to create process ").append(process).append(" (").append(detail).append(')');
+                break;
+            case PROCESS_DESTROYED:
+                sb.append("Process destruction successful: ").append(process);
+                break;
+            case NO_SUCH_PROCESS:
+                sb.append("Operation failed, process ").append(process).append(" does not exist");
+                break;
+            case NO_SUCH_SEGMENT:
+                sb.append("Operation failed, segment ").append(process).append(" (").append(a).append(") does not exist");
+                break;
+            case NO_SUCH_PAGE:
+                sb.append("Operation failed, page ").append(b).append(" is not in segment ").append(process).append(" (").append(a).append(')');
+                break;
+            case OFFSET_OUT_OF_BOUNDS:
+                sb.append("Operation failed, process ").append(process).append(" segment offset (").append(b).append(") out of bounds");
+                break;
+            case TRANSLATED:
+                sb.append("Process ").append(process).append(" segment(").append(a).append(") segment offset(").append(b)
+                        .append(") physical address: ").append(c);
+                break;
+            case PAGE_FAULT:
+                sb.append("Page fault: process ").append(process).append(", segment(").append(a).append("), page(").append(b)
+                        .append(") is not in memory");
+                break;
+            case PAGE_IN:
+                sb.append("IO: Loading process ").append(process).append(", segment(").append(a).append("), page(").append(b)
+                        .append(") into frame ").append(c);
+                break;
+            case PAGE_OUT:
+                sb.append("IO: Writing content of frame ").append(c).append(" to external storage. Process ").append(process)
+                        .append(", segment(").append(a).append("), page(").append(b).append(')');
+                break;
+            case PAGE_DROPPED:
+                sb.append("Debug: Dropping clean page of process ").append(process).append(", segment(").append(a)
+                        .append("), page(").append(b).append(") from frame ").append(c);
+                break;
+            case PAGE_PREFETCHED:
+                sb.append("Debug: Read ahead process ").append(process).append(", segment(").append(a).append("), page(")
+                        .append(b).append(')');
+                break;
+            case FRAMES_ALLOCATED:
+                sb.append("Debug: Allocated ").append(a);
+                if (b >= 0) {
+                    sb.append(" contiguous frames from ").append(b);
+                } else {
+                    sb.append(" frames");
+                }
+                sb.append(" to ID: ").append(process);
+                break;
+            case FRAMES_RELEASED:
+                sb.append("Debug: Released ").append(a).append(" unreferenced frames of ID: ").append(process)
+                        .append(", resident set is now ").append(b).append(" frames");
+                break;
+            case REQUEST_COUNTS:
+                sb.append("Total Requests: ").append(a).append(System.lineSeparator()).append("Page Faults: ").append(b);
+                break;
+        }
+    }
+}
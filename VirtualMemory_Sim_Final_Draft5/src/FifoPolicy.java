@@ -0,0 +1,30 @@
+/**
+ * First in, first out: evicts the page that has been resident the longest. Accesses do not change the order.
+ */
+public class FifoPolicy implements ReplacementPolicy {
+    // Load order of the resident slots; only loads touch the list, so its eldest slot is the first one in
+    private final LruList loadOrder;
+
+    public FifoPolicy(int capacity) {
+        loadOrder = new LruList(capacity);
+    }
+
+    @Override
+    public void onLoad(int slot, int pageKey) {
+        loadOrder.touch(slot);
+    }
+
+    @Override
+    public void onHit(int slot) {
+    }
+
+    @Override
+    public void onEvict(int slot) {
+        loadOrder.remove(slot);
+    }
+
+    @Override
+    public int selectVictim(int incomingKey) {
+        return loadOrder.eldest();
+    }
+}
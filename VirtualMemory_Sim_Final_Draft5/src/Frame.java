@@ -1,5 +1,6 @@
 /*Purpose:This class represents a frame in a memory management system.
   A frame is a fixed-size block of memory used to store data.
+  Together the frames form an inverted page table: each frame records which process, segment and page it holds.
  */
 public class Frame {
 
@@ -9,28 +10,43 @@ public class Frame {
     public boolean used;
 
     // The starting address of the frame in memory.
-    public int beginAddress;
+    public long beginAddress;
 
-    // An identifier associated with the frame, typically representing the data it holds.
-    public String id;
+    // Handle of the process owning the frame (see OS.getProcess(int)), -1 if the frame is unused.
+    public int owner;
+
+    // Segment and page number held by the frame, -1 if the frame is unused or reserved for a page not loaded yet.
+    public int segmentNum;
+    public int pageNum;
 
     //Constructs a new Frame object with the specified frame number and starting address.
-    // The frame is initially set to unused and has no associated identifier
-    public Frame(int frameNum, int beginAddress) {
+    // The frame is initially set to unused and has no owner
+    public Frame(int frameNum, long beginAddress) {
         // super();
         this.frameNum = frameNum;
         this.beginAddress = beginAddress;
         setUnused();
     }
 
-    public void setUsed(String id) {
+    // Allocates the frame to a process, without a page in it yet
+    public void setUsed(int owner) {
         this.used = true;
-        this.id = id;
+        this.owner = owner;
+        this.segmentNum = -1;
+        this.pageNum = -1;
     }
 
     public void setUnused() {
         this.used = false;
-        this.id = null;
+        this.owner = -1;
+        this.segmentNum = -1;
+        this.pageNum = -1;
+    }
+
+    // Records the page loaded into the frame
+    public void setPage(int segmentNum, int pageNum) {
+        this.segmentNum = segmentNum;
+        this.pageNum = pageNum;
     }
 
     public int getFrameNum() {
@@ -45,82 +61,27 @@ public class Frame {
         return used;
     }
 
-    public int getBeginAddress() {
+    public long getBeginAddress() {
         return beginAddress;
     }
 
-    public void setBeginAddress(int beginAddress) {
+    public void setBeginAddress(long beginAddress) {
         this.beginAddress = beginAddress;
     }
 
-    public String getId() {
-        return id;
-    }
-
-    // Improved setId method with format validation
-    public void setId(String id) {
-        if (validateIdFormat(id)) {
-            this.id = id;
-        } else {
-            throw new IllegalArgumentException("Invalid ID format. Expected format: processId_segmentNumber_pageNumber");
-        }
-    }
-
-    // Helper method to validate the ID format
-    private boolean validateIdFormat(String id) {
-        if (id == null || id.isEmpty()) {
-            return false;
-        }
-        String[] parts = id.split("_");
-        if (parts.length != 3) {
-            return false;
-        }
-        try {
-            // Validate that segment and page numbers are integers
-            Integer.parseInt(parts[1]);
-            Integer.parseInt(parts[2]);
-        } catch (NumberFormatException e) {
-            return false;
-        }
-        return true;
-    }
-
-    // Improved parseIdComponent method
-    private String parseIdComponent(int index) {
-        if (id != null && !id.isEmpty()) {
-            String[] parts = id.split("_");
-            if (parts.length > index) {
-                return parts[index];
-            } else {
-                return "Component missing"; // Indicate missing component
-            }
-        }
-        return "ID not set"; // Indicate ID is not set
-    }
-
-    // Method to extract the process ID from the frame's ID
-    public String getProcessId() {
-        return parseIdComponent(0);
+    // Handle of the owning process, -1 if the frame is unused
+    public int getOwner() {
+        return owner;
     }
 
-    // Method to extract the segment number from the frame's ID
+    // Segment number of the page in the frame, -1 if there is none
     public int getSegmentNumber() {
-        String segmentNumberStr = parseIdComponent(1);
-        try {
-            return Integer.parseInt(segmentNumberStr);
-        } catch (NumberFormatException e) {
-            return -1; // Return an invalid number if parsing fails
-        }
+        return segmentNum;
     }
 
-    // Method to extract the page number from the frame's ID
+    // Page number of the page in the frame, -1 if there is none
     public int getPageNumber() {
-        String pageNumberStr = parseIdComponent(2);
-        try {
-            return Integer.parseInt(pageNumberStr);
-        } catch (NumberFormatException e) {
-            return -1; // Return an invalid number if parsing fails
-        }
+        return pageNum;
     }
 
 }
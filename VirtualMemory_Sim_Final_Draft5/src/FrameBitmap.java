@@ -0,0 +1,235 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Free-frame bitmap: one bit per frame packed into longs, a set bit means the frame is free.
+ * Allocation searches whole words with Long.numberOfTrailingZeros, starting from a hint that points at or below
+ * the lowest word with a free frame, so the lowest free frame is normally returned first.
+ *
+ * The bitmap is safe for concurrent use without locks: frames are claimed and returned by compare-and-set on their
+ * word. An allocation first reserves its frames from the free count, which never exceeds the number of set bits,
+ * so once reserved the frames are certain to be found.
+ */
+public class FrameBitmap {
+    private final AtomicLongArray words;
+    private final int frameCount;
+    private final AtomicInteger freeCount;
+    private volatile int hint = 0; // Lowest word likely to have a free frame
+
+    /**
+     * Creates a bitmap with all frames free.
+     *
+     * @param frameCount The number of frames.
+     */
+    public FrameBitmap(int frameCount) {
+        this.frameCount = frameCount;
+        int wordCount = (frameCount + 63) >>> 6;
+        words = new AtomicLongArray(wordCount);
+        for (int i = 0; i < wordCount; i++) {
+            words.set(i, -1L);
+        }
+        if ((frameCount & 63) != 0) {
+            words.set(wordCount - 1, (1L << (frameCount & 63)) - 1); // Bits past the last frame are never free
+        }
+        freeCount = new AtomicInteger(frameCount);
+    }
+
+    /**
+     * Allocates the lowest free frame.
+     *
+     * @return The frame number, or -1 if no frame is free.
+     */
+    public int allocate() {
+        return reserve(1) ? claim() : -1;
+    }
+
+    /**
+     * Allocates n frames, all or none.
+     *
+     * @return The frame numbers, or null if fewer than n frames are free.
+     */
+    public int[] allocate(int n) {
+        if (!reserve(n)) {
+            return null;
+        }
+        int[] frames = new int[n];
+        for (int i = 0; i < n; i++) {
+            frames[i] = claim();
+        }
+        return frames;
+    }
+
+    /**
+     * Allocates the lowest run of n consecutive free frames. Runs are searched one at a time; single frame
+     * allocations may proceed meanwhile, and a run that loses a frame to one of them is given back and the search
+     * goes on.
+     *
+     * @param n The length of the run.
+     * @return The first frame number of the run, or -1 if there is no such run.
+     */
+    public synchronized int allocateRun(int n) {
+        if (n <= 0 || !reserve(n)) {
+            return -1;
+        }
+        int from = hint << 6;
+        while (true) {
+            int start = nextFree(from);
+            while (start >= 0 && start + n <= frameCount) {
+                int end = nextUsed(start);
+                if (end - start >= n) {
+                    int claimed = claimRange(start, start + n);
+                    if (claimed == start + n) {
+                        return start;
+                    }
+                    // Lost a frame to a concurrent allocation: give back what was claimed and look further
+                    releaseRange(start, claimed);
+                    end = claimed;
+                }
+                start = nextFree(end);
+            }
+            if (from == 0) {
+                break;
+            }
+            from = 0; // The hint may have been raised past a frame freed meanwhile: search once more from the start
+        }
+        freeCount.addAndGet(n);
+        return -1;
+    }
+
+    /**
+     * Returns the frame to the free pool.
+     *
+     * @param frameNum The frame number.
+     * @throws IllegalArgumentException If the frame is out of range or already free.
+     */
+    public void free(int frameNum) {
+        if (frameNum < 0 || frameNum >= frameCount) {
+            throw new IllegalArgumentException("Frame " + frameNum + " does not exist");
+        }
+        int w = frameNum >>> 6;
+        long mask = 1L << frameNum;
+        long word;
+        do {
+            word = words.get(w);
+            if ((word & mask) != 0) {
+                throw new IllegalArgumentException("Frame " + frameNum + " is already free");
+            }
+        } while (!words.compareAndSet(w, word, word | mask));
+        freeCount.incrementAndGet();
+        if (w < hint) {
+            hint = w;
+        }
+    }
+
+    public boolean isFree(int frameNum) {
+        return (words.get(frameNum >>> 6) & (1L << frameNum)) != 0;
+    }
+
+    public int freeCount() {
+        return freeCount.get();
+    }
+
+    // Takes n frames off the free count if there are that many
+    private boolean reserve(int n) {
+        int free;
+        do {
+            free = freeCount.get();
+            if (free < n) {
+                return false;
+            }
+        } while (!freeCount.compareAndSet(free, free - n));
+        return true;
+    }
+
+    // Clears the lowest set bit it can find; a frame must have been reserved
+    private int claim() {
+        int w = hint;
+        while (true) {
+            if (w >= words.length()) {
+                w = 0; // The hint was raised past a frame freed meanwhile
+            }
+            long word = words.get(w);
+            if (word == 0) {
+                w++;
+                continue;
+            }
+            if (words.compareAndSet(w, word, word & (word - 1))) {
+                if (hint < w) {
+                    hint = w;
+                }
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+    }
+
+    // Claims frames from..to-1 word by word; returns to if all were free, otherwise the first frame not claimed
+    private int claimRange(int from, int to) {
+        int f = from;
+        while (f < to) {
+            int w = f >>> 6;
+            int last = Math.min(to, (w + 1) << 6);
+            long mask = rangeMask(f, last);
+            long word = words.get(w);
+            if ((word & mask) != mask) {
+                return f;
+            }
+            if (words.compareAndSet(w, word, word & ~mask)) {
+                f = last;
+            }
+        }
+        return to;
+    }
+
+    // Sets the bits of frames from..to-1 again, undoing a partial claimRange
+    private void releaseRange(int from, int to) {
+        int f = from;
+        while (f < to) {
+            int w = f >>> 6;
+            int last = Math.min(to, (w + 1) << 6);
+            long mask = rangeMask(f, last);
+            long word;
+            do {
+                word = words.get(w);
+            } while (!words.compareAndSet(w, word, word | mask));
+            f = last;
+        }
+    }
+
+    // Bits of frames from..to-1, all in the same word
+    private static long rangeMask(int from, int to) {
+        long high = (to & 63) == 0 ? -1L : (1L << to) - 1;
+        return high & (-1L << from);
+    }
+
+    // First free frame at or after from, or -1
+    private int nextFree(int from) {
+        if (from >= frameCount) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long word = words.get(w) & (-1L << from);
+        while (word == 0) {
+            if (++w == words.length()) {
+                return -1;
+            }
+            word = words.get(w);
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    // First used frame at or after from, or frameCount
+    private int nextUsed(int from) {
+        if (from >= frameCount) {
+            return frameCount;
+        }
+        int w = from >>> 6;
+        long word = ~words.get(w) & (-1L << from);
+        while (word == 0) {
+            if (++w == words.length()) {
+                return frameCount;
+            }
+            word = ~words.get(w);
+        }
+        return Math.min((w << 6) + Long.numberOfTrailingZeros(word), frameCount);
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+/**
+ * Bounded set of page keys in recency order, used by 2Q and ARC to remember recently evicted pages.
+ * Keys are found through an open addressing hash table and ordered through an LruList over node indexes,
+ * so adding, removing and looking up a key do not allocate. Adding a key to a full list drops the oldest one.
+ */
+public class GhostList {
+    private int capacity; // Maximum number of keys
+    private int[] keys; // Key of each node
+    private int[] freeNodes; // Stack of unused node indexes
+    private int freeCount;
+    private int[] table; // Node index + 1 of each hash table entry, 0 if the entry is empty
+    private int shift; // 32 - log2(table.length)
+    private final LruList order; // Nodes in recency order
+
+    public GhostList(int capacity) {
+        order = new LruList(Math.max(capacity, 1));
+        keys = new int[0];
+        freeNodes = new int[0];
+        table = new int[0];
+        ensureCapacity(capacity);
+    }
+
+    // Raises the maximum number of keys, keeping the keys already in the list
+    public void ensureCapacity(int newCapacity) {
+        if (newCapacity <= capacity && table.length > 0) {
+            return;
+        }
+        int oldCapacity = keys.length;
+        keys = Arrays.copyOf(keys, Math.max(newCapacity, 1));
+        freeNodes = Arrays.copyOf(freeNodes, keys.length);
+        for (int node = keys.length - 1; node >= oldCapacity; node--) {
+            freeNodes[freeCount++] = node;
+        }
+        capacity = newCapacity;
+        int[] oldTable = table;
+        table = new int[Integer.highestOneBit(Math.max(keys.length, 2) * 2 - 1) * 2];
+        shift = 32 - Integer.numberOfTrailingZeros(table.length);
+        for (int entry : oldTable) {
+            if (entry != 0) {
+                table[indexOf(keys[entry - 1])] = entry;
+            }
+        }
+    }
+
+    /**
+     * Adds the key as the most recent one, dropping the oldest key if the list is full.
+     */
+    public void add(int key) {
+        if (capacity == 0) {
+            return;
+        }
+        int node = find(key);
+        if (node < 0) {
+            if (size() >= capacity) {
+                removeOldest();
+            }
+            node = freeNodes[--freeCount];
+            keys[node] = key;
+            table[indexOf(key)] = node + 1;
+        }
+        order.touch(node);
+    }
+
+    public boolean contains(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Removes the key, returning whether it was in the list.
+     */
+    public boolean remove(int key) {
+        int i = slotOf(key);
+        if (table[i] == 0) {
+            return false;
+        }
+        int node = table[i] - 1;
+        order.remove(node);
+        freeNodes[freeCount++] = node;
+        deleteEntry(i);
+        return true;
+    }
+
+    // Drops the oldest key, if any
+    public void removeOldest() {
+        int node = order.eldest();
+        if (node >= 0) {
+            remove(keys[node]);
+        }
+    }
+
+    public int size() {
+        return order.size();
+    }
+
+    private int hash(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    // Node of the key, -1 if absent
+    private int find(int key) {
+        int entry = table[slotOf(key)];
+        return entry - 1;
+    }
+
+    // Table index holding the key, or the empty index where its probe sequence ends
+    private int slotOf(int key) {
+        int mask = table.length - 1;
+        int i = hash(key);
+        while (table[i] != 0 && keys[table[i] - 1] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // First empty table index on the probe sequence of a key known to be absent
+    private int indexOf(int key) {
+        int mask = table.length - 1;
+        int i = hash(key);
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // Linear probing deletion: shifts later entries of the cluster back so no probe sequence is broken
+    private void deleteEntry(int i) {
+        int mask = table.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == 0) {
+                break;
+            }
+            int home = hash(keys[table[j] - 1]);
+            // Move the entry at j into the hole at i unless its home lies cyclically in (i, j]
+            boolean homeBetween = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+            if (!homeBetween) {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-bucketed histogram of durations in nanoseconds, in the style of HdrHistogram: values are grouped by their
+ * highest set bit, and each power of two is split into SUB_BUCKETS linear buckets, so every recorded value is
+ * known to within 1/SUB_BUCKETS (about 6%) whatever its magnitude, in under 8 KB of counters.
+ *
+ * Only one thread records at a time (the holder of the owning PCB's lock), so record uses plain increments
+ * published with lazySet instead of atomic read-modify-write. Any thread can take a snapshot at any time.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Values below SUB_BUCKETS get one bucket each, then SUB_BUCKETS buckets for each power of two up to 2^62
+    private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records one duration. Negative values count as 0.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        int index = bucketOf(Math.max(nanos, 0));
+        counts.lazySet(index, counts.get(index) + 1);
+    }
+
+    /**
+     * Adds the counts of the snapshot to this histogram, e.g. to keep those of a destroyed process.
+     */
+    public void add(Snapshot snapshot) {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (snapshot.counts[i] != 0) {
+                counts.lazySet(i, counts.get(i) + snapshot.counts[i]);
+            }
+        }
+    }
+
+    // Copies the current counts; buckets being recorded meanwhile may be one count behind
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that falls into the bucket
+    private static long highestValueIn(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Immutable copy of the counts of a histogram, or the sum of several.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+        }
+
+        public static Snapshot empty() {
+            return new Snapshot(new long[BUCKETS]);
+        }
+
+        // Number of recorded values
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the value below which the given percentage of recorded values fall, rounded up to its bucket's
+         * upper bound, or 0 if nothing was recorded.
+         *
+         * @param percentile Between 0 and 100.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValueIn(i);
+                }
+            }
+            return getMax();
+        }
+
+        // Upper bound of the highest non-empty bucket, 0 if nothing was recorded
+        public long getMax() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return highestValueIn(i);
+                }
+            }
+            return 0;
+        }
+
+        // Mean of the recorded values, taking each value as its bucket's midpoint
+        public double getMean() {
+            if (count == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] != 0) {
+                    long high = highestValueIn(i);
+                    long low = i == 0 ? 0 : highestValueIn(i - 1) + 1;
+                    sum += counts[i] * ((low + high) / 2.0);
+                }
+            }
+            return sum / count;
+        }
+
+        // Sum of this and the other snapshot
+        public Snapshot plus(Snapshot other) {
+            long[] sum = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                sum[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(sum);
+        }
+
+        // e.g. "n=120 mean=2.1us p50=1.9us p99=7.7us max=12.2us"
+        public String toString() {
+            return String.format("n=%d mean=%s p50=%s p99=%s max=%s", count, formatNanos((long) getMean()),
+                    formatNanos(getValueAtPercentile(50)), formatNanos(getValueAtPercentile(99)), formatNanos(getMax()));
+        }
+    }
+
+    // Formats a duration with a unit that keeps it readable, e.g. 850ns, 12.3us, 4.5ms
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        } else if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Least frequently used: evicts the page with the fewest accesses since it was loaded, the oldest one among ties.
+ * Uses the O(1) scheme of frequency buckets: a list of buckets in increasing access count, each holding the slots
+ * with that count in arrival order. A hit moves a slot to the next bucket, creating it if needed, so loads, hits,
+ * evictions and victim selection are all constant time.
+ */
+public class LfuPolicy implements ReplacementPolicy {
+    private static final int NONE = -1;
+
+    // Slots with the same access count, linked through prev/next in arrival order
+    private static final class Bucket {
+        final long count;
+        int head = NONE; // Oldest slot
+        int tail = NONE; // Newest slot
+        Bucket lower;
+        Bucket higher;
+
+        Bucket(long count) {
+            this.count = count;
+        }
+    }
+
+    private Bucket[] bucketOf; // Bucket of each resident slot, null if the slot is empty
+    private int[] prev;
+    private int[] next;
+    private Bucket lowest; // Bucket with the smallest count, null if nothing is resident
+
+    public LfuPolicy(int capacity) {
+        bucketOf = new Bucket[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+    }
+
+    @Override
+    public void onLoad(int slot, int pageKey) {
+        if (slot >= bucketOf.length) {
+            int capacity = Math.max(slot + 1, bucketOf.length * 2);
+            bucketOf = Arrays.copyOf(bucketOf, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        if (lowest == null || lowest.count != 1) {
+            Bucket bucket = new Bucket(1);
+            bucket.higher = lowest;
+            if (lowest != null) {
+                lowest.lower = bucket;
+            }
+            lowest = bucket;
+        }
+        append(lowest, slot);
+    }
+
+    @Override
+    public void onHit(int slot) {
+        Bucket bucket = bucketOf[slot];
+        Bucket target = bucket.higher;
+        if (target == null || target.count != bucket.count + 1) {
+            target = new Bucket(bucket.count + 1);
+            target.lower = bucket;
+            target.higher = bucket.higher;
+            if (bucket.higher != null) {
+                bucket.higher.lower = target;
+            }
+            bucket.higher = target;
+        }
+        unlink(slot);
+        append(target, slot);
+    }
+
+    @Override
+    public void onEvict(int slot) {
+        if (bucketOf[slot] != null) {
+            unlink(slot);
+        }
+    }
+
+    @Override
+    public int selectVictim(int incomingKey) {
+        return lowest == null ? NONE : lowest.head;
+    }
+
+    private void append(Bucket bucket, int slot) {
+        bucketOf[slot] = bucket;
+        prev[slot] = bucket.tail;
+        next[slot] = NONE;
+        if (bucket.tail != NONE) {
+            next[bucket.tail] = slot;
+        } else {
+            bucket.head = slot;
+        }
+        bucket.tail = slot;
+    }
+
+    // Removes the slot from its bucket, and the bucket from the bucket list if it becomes empty
+    private void unlink(int slot) {
+        Bucket bucket = bucketOf[slot];
+        bucketOf[slot] = null;
+        if (prev[slot] != NONE) {
+            next[prev[slot]] = next[slot];
+        } else {
+            bucket.head = next[slot];
+        }
+        if (next[slot] != NONE) {
+            prev[next[slot]] = prev[slot];
+        } else {
+            bucket.tail = prev[slot];
+        }
+        if (bucket.head == NONE) {
+            if (bucket.lower != null) {
+                bucket.lower.higher = bucket.higher;
+            } else {
+                lowest = bucket.higher;
+            }
+            if (bucket.higher != null) {
+                bucket.higher.lower = bucket.lower;
+            }
+        }
+    }
+}
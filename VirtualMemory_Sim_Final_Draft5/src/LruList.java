@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * Recency list over slots (small non-negative ints), linked through int arrays instead of node objects.
+ * Moving a slot to the most recently used end and finding the least recently used slot are both O(1).
+ * The arrays grow when a slot beyond the current capacity is touched.
+ */
+public class LruList {
+    private static final int NONE = -1;
+
+    private int[] prev; // Towards the most recently used end
+    private int[] next; // Towards the least recently used end
+    private boolean[] linked;
+    private int head = NONE; // Most recently used slot
+    private int tail = NONE; // Least recently used slot
+    private int size = 0;
+
+    public LruList(int capacity) {
+        prev = new int[capacity];
+        next = new int[capacity];
+        linked = new boolean[capacity];
+    }
+
+    /**
+     * Marks the slot as the most recently used, inserting it if it is not in the list yet.
+     *
+     * @param slot The slot that was used.
+     */
+    public void touch(int slot) {
+        if (slot >= linked.length) {
+            grow(slot + 1);
+        }
+        if (head == slot) {
+            return;
+        }
+        if (linked[slot]) {
+            unlink(slot);
+        } else {
+            size++;
+        }
+        prev[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) {
+            prev[head] = slot;
+        }
+        head = slot;
+        if (tail == NONE) {
+            tail = slot;
+        }
+        linked[slot] = true;
+    }
+
+    /**
+     * Removes the slot from the list. Does nothing if the slot is not in the list.
+     *
+     * @param slot The slot to remove.
+     */
+    public void remove(int slot) {
+        if (contains(slot)) {
+            unlink(slot);
+            linked[slot] = false;
+            size--;
+        }
+    }
+
+    public boolean contains(int slot) {
+        return slot < linked.length && linked[slot];
+    }
+
+    // Number of slots in the list
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the least recently used slot, or -1 if the list is empty.
+     */
+    public int eldest() {
+        return tail;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, linked.length * 2);
+        prev = Arrays.copyOf(prev, capacity);
+        next = Arrays.copyOf(next, capacity);
+        linked = Arrays.copyOf(linked, capacity);
+    }
+
+    private void unlink(int slot) {
+        int p = prev[slot];
+        int n = next[slot];
+        if (p != NONE) {
+            next[p] = n;
+        } else {
+            head = n;
+        }
+        if (n != NONE) {
+            prev[n] = p;
+        } else {
+            tail = p;
+        }
+    }
+}
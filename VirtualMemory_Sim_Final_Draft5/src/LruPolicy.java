@@ -0,0 +1,30 @@
+/**
+ * Least recently used: evicts the page whose last access is the oldest.
+ */
+public class LruPolicy implements ReplacementPolicy {
+    private final LruList recency;
+
+    public LruPolicy(int capacity) {
+        recency = new LruList(capacity);
+    }
+
+    @Override
+    public void onLoad(int slot, int pageKey) {
+        recency.touch(slot);
+    }
+
+    @Override
+    public void onHit(int slot) {
+        recency.touch(slot);
+    }
+
+    @Override
+    public void onEvict(int slot) {
+        recency.remove(slot);
+    }
+
+    @Override
+    public int selectVictim(int incomingKey) {
+        return recency.eldest();
+    }
+}
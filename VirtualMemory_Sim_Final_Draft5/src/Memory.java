@@ -1,43 +1,83 @@
 //Purpose： Simulates the Memory class
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.function.IntFunction;
 
 public class Memory {
-    private Frame[] memory;
-    private int unusedFrameCount = 0;
-
+    private static final int CHUNK_SHIFT = 30; // Frame contents are kept in direct buffers of at most 1G each
 
-    //Creates a memory with a specified number of unused frames.
-    public Memory(int frameNum) {
+    private Frame[] memory;
+    private FrameBitmap freeFrames; // Free frames, one bit per frame
+    private final Tlb tlb; // Translation cache of the memory management unit
+    private final int pageShift;
+    // With a swap file (MemoryConfig.swapFile): the contents of the frames, and the swap space. Both null otherwise.
+    private final ByteBuffer[] frameData;
+    private final int chunkFrameShift; // log2 of the number of frames per buffer of frameData
+    private final SwapFile swap;
+    private final PageOutQueue pageOut; // Queued page-outs with a swap file and MemoryConfig.swapBatch > 1, otherwise null
+
+
+    //Creates a memory with config.frameCount unused frames.
+    public Memory(MemoryConfig config) {
+        int frameNum = config.frameCount;
         memory = new Frame[frameNum];
         for(int i = 0; i < frameNum; i++) {
-            memory[i] = new Frame(i, i * OS.pageSize);
+            memory[i] = new Frame(i, (long) i << config.pageShift);
+        }
+        freeFrames = new FrameBitmap(frameNum);
+        tlb = new Tlb(config.tlbEntries, config.tlbWays);
+        pageShift = config.pageShift;
+
+        chunkFrameShift = Math.max(0, CHUNK_SHIFT - pageShift);
+        if(config.swapFile == null) {
+            frameData = null;
+            swap = null;
+            pageOut = null;
+            return;
         }
-        unusedFrameCount = frameNum;
+        frameData = new ByteBuffer[(int) ((frameNum + (1L << chunkFrameShift) - 1) >>> chunkFrameShift)];
+        for(int i = 0; i < frameData.length; i++) {
+            int frames = Math.min(1 << chunkFrameShift, frameNum - (i << chunkFrameShift));
+            frameData[i] = ByteBuffer.allocateDirect(frames << pageShift);
+        }
+        swap = new SwapFile(Paths.get(config.swapFile), config.swapSize, config.pageSize);
+        pageOut = config.swapBatch > 1
+                ? new PageOutQueue(swap, config.pageSize, config.swapBatch, config.swapDelayMillis * 1_000_000L) : null;
     }
 
     /*
      * Placement policy: Preferably placed in low page frames.
 
-     * Allocates (sets used to true) the first n unused frames and returns an array containing the frame numbers.
-     * Returns null if there is not enough remaining memory.
+     * Allocates (sets used to true) the first n unused frames to the process with the given handle and returns an array
+     * containing the frame numbers. Returns null if there is not enough remaining memory.
+     * Safe to call from several threads: each frame goes to one caller only (see FrameBitmap).
      */
-    public int[] mallocFrame(String id, int n) {
-        if(unusedFrameCount < n) {
+    public int[] mallocFrame(int owner, int n) {
+        int[] result = freeFrames.allocate(n);
+        if(result == null) {
             return null;
         }
+        for(int i = 0; i < n; i++) {
+            memory[result[i]].setUsed(owner);
+        }
 
-        int[] result = new int[n];
-        int index = 0;
-        for(int i = 0; index < n && i < memory.length; i++) {
-            if(!memory[i].used) {
-                result[index] = memory[i].frameNum;
-                memory[i].setUsed(id);
-                index++;
-            }
+        return result;
+    }
+
+    /*
+     * Allocates n physically consecutive unused frames, the lowest such run first.
+     * Returns null if there is no run of n unused frames.
+     */
+    public int[] mallocContiguousFrame(int owner, int n) {
+        int first = freeFrames.allocateRun(n);
+        if(first < 0) {
+            return null;
         }
-        unusedFrameCount -= n;
-        System.out.println("Debug: Allocating frames for ID: " + id);
-        for (int frameNum : result) {
-            System.out.println("Debug: Allocated frame: " + frameNum + " to ID: " + id);
+
+        int[] result = new int[n];
+        for(int i = 0; i < n; i++) {
+            result[i] = first + i;
+            memory[first + i].setUsed(owner);
         }
 
         return result;
@@ -48,29 +88,119 @@ public class Memory {
 
     public void freeFrame(int[] frames) {
         for(int i = 0; i < frames.length; i++) {
+            // Clear the frame before it can be allocated again by another thread
             memory[frames[i]].setUnused();
+            freeFrames.free(frames[i]);
         }
-        unusedFrameCount += frames.length;
     }
 
 
     //  return the number of the frame that unused
     public int unusedFrameCount() {
-        return unusedFrameCount;
+        return freeFrames.freeCount();
+    }
+
+    /*
+     * Reserves swap space for a process: n consecutive swap slots, one per virtual page.
+     * Returns the first slot, or -1 if the swap space is full. Without a swap file there is no limit and every
+     * process gets slot 0.
+     */
+    public int allocateSwap(int n) {
+        return swap != null ? swap.allocate(n) : 0;
     }
 
-    // Simulates reading a page from external storage.
+    // Frees the swap slots reserved by allocateSwap
+    public void freeSwap(int first, int n) {
+        if(swap != null) {
+            if(pageOut != null) {
+                pageOut.discard(first, n);
+            }
+            swap.free(first, n);
+        }
+    }
+
+    // Reads a page from external storage.
 // Reads the content of frameNum frame into memory, associated with the specified id, segmentNum, and pageNum.
-    public void readPage(String id, int segmentNum, int pageNum, int frameNum) {
-        System.out.println("IO: Loading process " + id + ", segment(" + segmentNum + "), page(" + pageNum + ") into frame " + frameNum);
+    // With a swap file the page is read from swapSlot, or the frame is zero-filled if swapSlot is -1 (the page was never written out).
+    // A page still in the page-out queue is copied from there.
+    public void readPage(String id, int segmentNum, int pageNum, int swapSlot, int frameNum) {
+        EventLog.log(EventLog.Level.DEBUG, EventLog.Event.PAGE_IN, id, segmentNum, pageNum, frameNum);
+        if(swap == null) {
+            return;
+        }
+        ByteBuffer page = frameBuffer(frameNum);
+        if(swapSlot < 0) {
+            while(page.remaining() >= Long.BYTES) {
+                page.putLong(0);
+            }
+            while(page.hasRemaining()) {
+                page.put((byte) 0);
+            }
+        } else if(pageOut == null || !pageOut.read(swapSlot, page)) {
+            swap.read(swapSlot, page);
+        }
     }
 
     /**
-     * Simulates writing a page to external storage.
+     * Writes a page to external storage.
      * Writes the content of the frameNum frame to external storage, associated with the specified id, segmentNum, and pageNum.
+     * With a swap file the page is written to swapSlot, through the page-out queue if there is one.
      */
-    public void writePage(String id, int segmentNum, int pageNum, int frameNum) {
-        System.out.println("IO: Writing content of frame " + frameNum + " to external storage. Process " + id + ", segment(" + segmentNum + "), page(" + pageNum + ")");
+    public void writePage(String id, int segmentNum, int pageNum, int swapSlot, int frameNum) {
+        EventLog.log(EventLog.Level.DEBUG, EventLog.Event.PAGE_OUT, id, segmentNum, pageNum, frameNum);
+        if(pageOut != null) {
+            pageOut.write(swapSlot, frameBuffer(frameNum));
+        } else if(swap != null) {
+            swap.write(swapSlot, frameBuffer(frameNum));
+        }
+    }
+
+    /**
+     * Returns a buffer over the contents of the frame, from 0 to the page size, sharing the frame's memory.
+     * Only frames with a swap file hold contents.
+     *
+     * @throws IllegalStateException If there is no swap file.
+     */
+    public ByteBuffer frameBuffer(int frameNum) {
+        if(frameData == null) {
+            throw new IllegalStateException("Frames only hold contents with a swap file (--swap=)");
+        }
+        ByteBuffer page = frameData[frameNum >>> chunkFrameShift].duplicate();
+        int offset = (frameNum & ((1 << chunkFrameShift) - 1)) << pageShift;
+        page.limit(offset + (1 << pageShift)).position(offset);
+        return page.slice();
+    }
+
+    // Reads the byte at the physical address, see frameBuffer
+    public byte getByte(long address) {
+        return frameBuffer((int) (address >>> pageShift)).get((int) (address & ((1 << pageShift) - 1)));
+    }
+
+    // Writes the byte at the physical address, see frameBuffer
+    public void putByte(long address, byte value) {
+        frameBuffer((int) (address >>> pageShift)).put((int) (address & ((1 << pageShift) - 1)), value);
+    }
+
+    // Whether frames hold real contents moved to and from a swap file
+    public boolean hasSwap() {
+        return swap != null;
+    }
+
+    // The swap file, null if there is none
+    public SwapFile getSwap() {
+        return swap;
+    }
+
+    // The page-out queue, null if page-outs are written at once
+    public PageOutQueue getPageOutQueue() {
+        return pageOut;
+    }
+
+    // Closes and deletes the swap file, if any. Queued page-outs are dropped with it.
+    public void close() {
+        if(swap != null) {
+            swap.close();
+        }
     }
 
     //Returns the frame with the specified frame number. Returns null if the requested frame does not exist.
@@ -83,6 +213,11 @@ public class Memory {
 
     @Override
     public String toString() {
+        return toString(owner -> "#" + owner);
+    }
+
+    // Memory usage map, naming each frame's owner through ownerName (process handle -> process id)
+    public String toString(IntFunction<String> ownerName) {
         StringBuilder sb = new StringBuilder();
         sb.append("Memory Usage:");
         for(int i = 0; i < memory.length; i++) {
@@ -91,7 +226,7 @@ public class Memory {
             }
             if(memory[i].used) {
                 // Display the first 5 characters of the process id
-                String id = memory[i].id;
+                String id = ownerName.apply(memory[i].owner);
                 if(id.length() > 5) {
                     id = id.substring(0, 4);
                 }
@@ -103,6 +238,10 @@ public class Memory {
 
         return sb.toString();
     }
+    public Tlb getTlb() {
+        return tlb;
+    }
+
     public Frame[] getMemory(){
         return memory;
     }
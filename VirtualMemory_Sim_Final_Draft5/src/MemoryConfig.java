@@ -0,0 +1,242 @@
+/**
+ * Geometry of the simulated machine: memory size, page size and the per-process limits.
+ * The page size must be a power of 2 so that address translation can use shifts and masks.
+ */
+public class MemoryConfig {
+    // The original fixed geometry: 64K memory, 1K pages, at most 4 segments of 16K, resident set of at most 8 pages
+    public static final MemoryConfig DEFAULT = new MemoryConfig(64 * 1024, 1024, 4, 16 * 1024, 8);
+    // Page-outs to a swap file are queued and written in batches of up to 32 pages, each page waiting at most 50 ms
+    public static final int DEFAULT_SWAP_BATCH = 32;
+    public static final int DEFAULT_SWAP_DELAY_MILLIS = 50;
+
+    public final long memorySize;        //Memory size in bytes
+    public final int pageSize;           //Page size in bytes, a power of 2
+    public final int pageShift;          //log2(pageSize): page number = offset >>> pageShift
+    public final int pageMask;           //pageSize - 1: page offset = offset & pageMask
+    public final int frameCount;         //Number of frames in memory
+    public final int maxSegmentNum;      //Maximum number of segments in a program
+    public final int maxSegmentSize;     //Maximum size of a segment in bytes
+    public final int maxResidentSetNum;  //Maximum number of pages in a process's resident set
+    public final int tlbEntries;         //Number of TLB entries, 0 for no TLB
+    public final int tlbWays;            //TLB associativity (entries per set)
+    public final String swapFile;        //Swap file path, null to only log page I/O (see Memory.readPage)
+    public final long swapSize;          //Swap space in bytes, a multiple of the page size; 0 without a swap file
+    public final int swapBatch;          //Page-outs queued before they are written, 1 to write each one at once (see PageOutQueue)
+    public final int swapDelayMillis;    //Longest a queued page-out waits before the next page-out flushes the queue
+
+    /**
+     * Constructor for MemoryConfig.
+     *
+     * @param memorySize Memory size in bytes, a multiple of the page size.
+     * @param pageSize Page size in bytes, a power of 2.
+     * @param maxSegmentNum Maximum number of segments in a program.
+     * @param maxSegmentSize Maximum size of a segment in bytes.
+     * @param maxResidentSetNum Maximum number of pages in a process's resident set.
+     * @throws IllegalArgumentException If the geometry is inconsistent.
+     */
+    public MemoryConfig(long memorySize, int pageSize, int maxSegmentNum, int maxSegmentSize, int maxResidentSetNum) {
+        this(memorySize, pageSize, maxSegmentNum, maxSegmentSize, maxResidentSetNum, 64, 4);
+    }
+
+    /**
+     * Constructor for MemoryConfig with an explicit TLB geometry.
+     *
+     * @param tlbEntries Number of TLB entries, 0 for no TLB.
+     * @param tlbWays TLB associativity; tlbEntries / tlbWays must be a power of 2.
+     * @throws IllegalArgumentException If the geometry is inconsistent.
+     */
+    public MemoryConfig(long memorySize, int pageSize, int maxSegmentNum, int maxSegmentSize, int maxResidentSetNum,
+                        int tlbEntries, int tlbWays) {
+        this(memorySize, pageSize, maxSegmentNum, maxSegmentSize, maxResidentSetNum, tlbEntries, tlbWays, null, 0);
+    }
+
+    /**
+     * Constructor for MemoryConfig with a swap file: frames then hold real page contents, and pages are read from
+     * and written to the file (see SwapFile).
+     *
+     * @param swapFile Path of the swap file, created or truncated by Memory; null for no swap file.
+     * @param swapSize Swap space in bytes, a multiple of the page size. Each process needs one page per virtual page.
+     * @throws IllegalArgumentException If the geometry is inconsistent.
+     */
+    public MemoryConfig(long memorySize, int pageSize, int maxSegmentNum, int maxSegmentSize, int maxResidentSetNum,
+                        int tlbEntries, int tlbWays, String swapFile, long swapSize) {
+        this(memorySize, pageSize, maxSegmentNum, maxSegmentSize, maxResidentSetNum, tlbEntries, tlbWays, swapFile, swapSize,
+                DEFAULT_SWAP_BATCH, DEFAULT_SWAP_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructor for MemoryConfig with a swap file and explicit page-out batching (see PageOutQueue).
+     *
+     * @param swapBatch Page-outs queued before they are written together, 1 to write each page-out at once.
+     * @param swapDelayMillis Longest a queued page-out waits before the next page-out flushes the queue.
+     * @throws IllegalArgumentException If the geometry is inconsistent.
+     */
+    public MemoryConfig(long memorySize, int pageSize, int maxSegmentNum, int maxSegmentSize, int maxResidentSetNum,
+                        int tlbEntries, int tlbWays, String swapFile, long swapSize, int swapBatch, int swapDelayMillis) {
+        if (pageSize <= 0 || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException("Page size must be a power of 2: " + pageSize);
+        }
+        if (memorySize < pageSize || memorySize % pageSize != 0) {
+            throw new IllegalArgumentException("Memory size must be a positive multiple of the page size: " + memorySize);
+        }
+        if (memorySize / pageSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many frames: " + memorySize / pageSize);
+        }
+        if (maxSegmentNum <= 0 || maxSegmentSize <= 0 || maxResidentSetNum <= 0) {
+            throw new IllegalArgumentException("Segment and resident set limits must be positive");
+        }
+        if (maxResidentSetNum > PageTable.MAX_SLOT) {
+            throw new IllegalArgumentException("Resident set limit must be at most " + PageTable.MAX_SLOT);
+        }
+        if (tlbEntries < 0 || (tlbEntries > 0 && (tlbWays <= 0 || tlbEntries % tlbWays != 0
+                || Integer.bitCount(tlbEntries / tlbWays) != 1))) {
+            throw new IllegalArgumentException("TLB entries divided by ways must be a power of 2: " + tlbEntries + "/" + tlbWays);
+        }
+        if (swapFile != null && (swapSize < pageSize || swapSize % pageSize != 0 || swapSize / pageSize > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("Swap size must be a positive multiple of the page size: " + swapSize);
+        }
+        if (swapBatch <= 0 || (long) swapBatch * pageSize > (1L << 30) || swapDelayMillis < 0) {
+            throw new IllegalArgumentException("Swap batch must be between 1 and 1G of pages, and the delay not negative: "
+                    + swapBatch + ", " + swapDelayMillis);
+        }
+        this.memorySize = memorySize;
+        this.pageSize = pageSize;
+        this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+        this.pageMask = pageSize - 1;
+        this.frameCount = (int) (memorySize / pageSize);
+        this.maxSegmentNum = maxSegmentNum;
+        this.maxSegmentSize = maxSegmentSize;
+        this.maxResidentSetNum = maxResidentSetNum;
+        this.tlbEntries = tlbEntries;
+        this.tlbWays = tlbWays;
+        this.swapFile = swapFile;
+        this.swapSize = swapFile != null ? swapSize : 0;
+        this.swapBatch = swapBatch;
+        this.swapDelayMillis = swapDelayMillis;
+    }
+
+    /**
+     * Returns the number of pages needed to hold the given number of bytes.
+     */
+    public int pageCount(int bytes) {
+        return (int) (((long) bytes + pageMask) >>> pageShift);
+    }
+
+    /**
+     * Builds a configuration from command line options, starting from DEFAULT. Arguments that are not
+     * geometry options (see isOption) are ignored so callers can mix them with their own options.
+     *
+     *   --memory=64K --page=1K --segments=4 --segment-size=16K --resident=8 --tlb=64 --tlb-ways=4
+     *   --swap=path/to/swapfile --swap-size=1G --swap-batch=32 --swap-delay=50
+     *
+     * Sizes accept a K, M or G suffix. Without --swap page I/O is only logged; --swap-size defaults to 4 times the memory.
+     * --swap-batch is in pages (1 writes every page-out at once) and --swap-delay in milliseconds.
+     *
+     * @throws IllegalArgumentException If an option value is invalid.
+     */
+    public static MemoryConfig fromArgs(String[] args) {
+        long memorySize = DEFAULT.memorySize;
+        int pageSize = DEFAULT.pageSize;
+        int maxSegmentNum = DEFAULT.maxSegmentNum;
+        int maxSegmentSize = DEFAULT.maxSegmentSize;
+        int maxResidentSetNum = DEFAULT.maxResidentSetNum;
+        int tlbEntries = DEFAULT.tlbEntries;
+        int tlbWays = DEFAULT.tlbWays;
+        String swapFile = null;
+        long swapSize = -1;
+        int swapBatch = DEFAULT_SWAP_BATCH;
+        int swapDelayMillis = DEFAULT_SWAP_DELAY_MILLIS;
+
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--memory=")) {
+                memorySize = parseSize(value);
+            } else if (arg.startsWith("--page=")) {
+                pageSize = toInt(parseSize(value), arg);
+            } else if (arg.startsWith("--segments=")) {
+                maxSegmentNum = toInt(parseSize(value), arg);
+            } else if (arg.startsWith("--segment-size=")) {
+                maxSegmentSize = toInt(parseSize(value), arg);
+            } else if (arg.startsWith("--resident=")) {
+                maxResidentSetNum = toInt(parseSize(value), arg);
+            } else if (arg.startsWith("--tlb=")) {
+                tlbEntries = toInt(parseSize(value), arg);
+            } else if (arg.startsWith("--tlb-ways=")) {
+                tlbWays = toInt(parseSize(value), arg);
+            } else if (arg.startsWith("--swap=")) {
+                swapFile = value;
+            } else if (arg.startsWith("--swap-size=")) {
+                swapSize = parseSize(value);
+            } else if (arg.startsWith("--swap-batch=")) {
+                swapBatch = toInt(parseSize(value), arg);
+            } else if (arg.startsWith("--swap-delay=")) {
+                swapDelayMillis = toInt(parseSize(value), arg);
+            }
+        }
+        if (swapSize < 0) {
+            swapSize = 4 * memorySize;
+        }
+        return new MemoryConfig(memorySize, pageSize, maxSegmentNum, maxSegmentSize, maxResidentSetNum, tlbEntries, tlbWays,
+                swapFile, swapSize, swapBatch, swapDelayMillis);
+    }
+
+    /**
+     * Returns whether the argument is one of the geometry options read by fromArgs.
+     */
+    public static boolean isOption(String arg) {
+        return arg.startsWith("--memory=") || arg.startsWith("--page=") || arg.startsWith("--segments=")
+                || arg.startsWith("--segment-size=") || arg.startsWith("--resident=") || arg.startsWith("--tlb=")
+                || arg.startsWith("--tlb-ways=") || arg.startsWith("--swap=") || arg.startsWith("--swap-size=")
+                || arg.startsWith("--swap-batch=") || arg.startsWith("--swap-delay=");
+    }
+
+    // Parses a byte count such as 4096, 16K, 512M or 4G
+    private static long parseSize(String value) {
+        String v = value.trim().toUpperCase();
+        long unit = 1;
+        if (v.endsWith("K")) {
+            unit = 1L << 10;
+        } else if (v.endsWith("M")) {
+            unit = 1L << 20;
+        } else if (v.endsWith("G")) {
+            unit = 1L << 30;
+        }
+        if (unit != 1) {
+            v = v.substring(0, v.length() - 1);
+        }
+        try {
+            return Math.multiplyExact(Long.parseLong(v), unit);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid size: " + value);
+        }
+    }
+
+    private static int toInt(long value, String arg) {
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Value too large: " + arg);
+        }
+        return (int) value;
+    }
+
+    // Formats a byte count with the largest exact unit, e.g. 65536 -> 64K
+    public static String formatSize(long bytes) {
+        if (bytes >= (1L << 30) && bytes % (1L << 30) == 0) {
+            return (bytes >> 30) + "G";
+        } else if (bytes >= (1L << 20) && bytes % (1L << 20) == 0) {
+            return (bytes >> 20) + "M";
+        } else if (bytes >= (1L << 10) && bytes % (1L << 10) == 0) {
+            return (bytes >> 10) + "K";
+        }
+        return String.valueOf(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "Memory size is " + formatSize(memorySize) + " (" + frameCount + " frames), page frame size is " + formatSize(pageSize)
+                + ", a process can have a maximum of " + maxSegmentNum + " segments, and each segment is at most "
+                + formatSize(maxSegmentSize) + ". A process resident set has a maximum of " + maxResidentSetNum + " pages. "
+                + (tlbEntries == 0 ? "No TLB." : "TLB of " + tlbEntries + " entries, " + tlbWays + "-way set associative.")
+                + (swapFile == null ? "" : " Swap file " + swapFile + " of " + formatSize(swapSize)
+                + (swapBatch > 1 ? ", page-outs written in batches of up to " + swapBatch + " pages." : "."));
+    }
+}
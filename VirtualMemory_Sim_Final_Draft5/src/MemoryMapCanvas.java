@@ -0,0 +1,205 @@
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import javafx.geometry.VPos;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Memory map drawn on a canvas, one cell per frame in rows of a fixed number of columns, so any number of frames can
+ * be shown without a node per frame. The colour (and, when cells are large enough, the label) of each frame comes
+ * from functions given by the caller, see setColors.
+ *
+ * Only frames marked with markDirty are redrawn, unless the view moved: the mouse wheel zooms around the pointer,
+ * dragging pans, and hovering a frame reports it to the hover listener. When a cell is smaller than a pixel, one
+ * frame per pixel is drawn.
+ */
+public class MemoryMapCanvas extends Canvas {
+    private static final double MIN_LABEL_CELL = 28; // Cells at least this large show their frame's label
+    private static final double MAX_CELL = 200;
+    private static final Color BACKGROUND = Color.rgb(40, 40, 40);
+
+    private final int frameCount;
+    private final int columns;
+    private final int rows;
+    private final double fitCell; // Cell size showing the whole memory
+    private double cell;           // Current cell size in pixels
+    private double panX = 0;       // Canvas position of the top left corner of frame 0
+    private double panY = 0;
+
+    private IntFunction<Color> colorOf = frameNum -> Color.GREY;
+    private IntFunction<String> labelOf = frameNum -> null;
+    private IntConsumer hoverListener = frameNum -> { };
+
+    private final BitSet dirty;     // Frames to redraw on the next redraw
+    private final BitSet blocks;    // Frames drawn for the dirty frames when several frames share a pixel
+    private boolean fullRedraw = true;
+    private double dragX;
+    private double dragY;
+
+    /**
+     * @param frameCount Number of frames in memory.
+     * @param width Canvas width in pixels.
+     * @param height Canvas height in pixels.
+     */
+    public MemoryMapCanvas(int frameCount, double width, double height) {
+        super(width, height);
+        this.frameCount = frameCount;
+        this.columns = (int) Math.ceil(Math.sqrt(frameCount));
+        this.rows = (frameCount + columns - 1) / columns;
+        this.fitCell = Math.min(width / columns, height / rows);
+        this.cell = fitCell;
+        this.dirty = new BitSet(frameCount);
+        this.blocks = new BitSet(frameCount);
+
+        setOnScroll(event -> zoom(event.getDeltaY() > 0 ? 1.25 : 0.8, event.getX(), event.getY()));
+        setOnMousePressed(event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        setOnMouseDragged(event -> {
+            panX += event.getX() - dragX;
+            panY += event.getY() - dragY;
+            dragX = event.getX();
+            dragY = event.getY();
+            markAllDirty();
+            redraw();
+        });
+        setOnMouseMoved(event -> hoverListener.accept(frameAt(event.getX(), event.getY())));
+        setOnMouseExited(event -> hoverListener.accept(-1));
+    }
+
+    /**
+     * Sets how frames are drawn and redraws all of them.
+     *
+     * @param colorOf Colour of a frame.
+     * @param labelOf Text drawn in a frame's cell when cells are large enough, or null for none.
+     */
+    public void setColors(IntFunction<Color> colorOf, IntFunction<String> labelOf) {
+        this.colorOf = colorOf;
+        this.labelOf = labelOf;
+        markAllDirty();
+        redraw();
+    }
+
+    // Called with the frame under the mouse pointer as it moves, -1 if there is none
+    public void setHoverListener(IntConsumer hoverListener) {
+        this.hoverListener = hoverListener;
+    }
+
+    // The frame drawn at the canvas position, -1 if there is none
+    public int frameAt(double x, double y) {
+        int col = (int) Math.floor((x - panX) / cell);
+        int row = (int) Math.floor((y - panY) / cell);
+        if (col < 0 || col >= columns || row < 0) {
+            return -1;
+        }
+        long frameNum = (long) row * columns + col;
+        return frameNum < frameCount ? (int) frameNum : -1;
+    }
+
+    // Marks a frame to be redrawn by the next redraw
+    public void markDirty(int frameNum) {
+        dirty.set(frameNum);
+    }
+
+    public void markAllDirty() {
+        fullRedraw = true;
+    }
+
+    /**
+     * Multiplies the cell size by factor, keeping the frame under (x, y) in place. The cell size stays between the
+     * size showing the whole memory and MAX_CELL.
+     */
+    public void zoom(double factor, double x, double y) {
+        double newCell = Math.max(fitCell, Math.min(MAX_CELL, cell * factor));
+        panX = x - (x - panX) * newCell / cell;
+        panY = y - (y - panY) * newCell / cell;
+        cell = newCell;
+        if (cell == fitCell) {
+            panX = 0;
+            panY = 0;
+        }
+        markAllDirty();
+        redraw();
+    }
+
+    /**
+     * Draws the frames marked since the last redraw, or every visible frame if the view changed.
+     */
+    public void redraw() {
+        GraphicsContext gc = getGraphicsContext2D();
+        // Visible rows and columns only
+        int firstCol = Math.max(0, (int) Math.floor(-panX / cell));
+        int lastCol = Math.min(columns - 1, (int) Math.floor((getWidth() - panX) / cell));
+        int firstRow = Math.max(0, (int) Math.floor(-panY / cell));
+        int lastRow = Math.min(rows - 1, (int) Math.floor((getHeight() - panY) / cell));
+        // Below one pixel per cell, draw one frame per pixel
+        int step = cell >= 1 ? 1 : (int) Math.ceil(1 / cell);
+        if (fullRedraw) {
+            fullRedraw = false;
+            dirty.clear();
+            gc.setFill(BACKGROUND);
+            gc.fillRect(0, 0, getWidth(), getHeight());
+            for (int row = firstRow; row <= lastRow; row += step) {
+                for (int col = firstCol; col <= lastCol; col += step) {
+                    int frameNum = row * columns + col;
+                    if (frameNum < frameCount) {
+                        drawFrame(gc, frameNum, step);
+                    }
+                }
+            }
+            return;
+        }
+        if (step == 1) {
+            for (int frameNum = dirty.nextSetBit(0); frameNum >= 0; frameNum = dirty.nextSetBit(frameNum + 1)) {
+                drawFrame(gc, frameNum, 1);
+            }
+            dirty.clear();
+            return;
+        }
+        // A dirty frame's pixel shows the frame a full redraw draws there: the first frame of its step x step block
+        blocks.clear();
+        for (int frameNum = dirty.nextSetBit(0); frameNum >= 0; frameNum = dirty.nextSetBit(frameNum + 1)) {
+            int row = frameNum / columns;
+            int col = frameNum % columns;
+            if (row >= firstRow && row <= lastRow && col >= firstCol && col <= lastCol) {
+                blocks.set((firstRow + (row - firstRow) / step * step) * columns
+                        + firstCol + (col - firstCol) / step * step);
+            }
+        }
+        for (int frameNum = blocks.nextSetBit(0); frameNum >= 0; frameNum = blocks.nextSetBit(frameNum + 1)) {
+            drawFrame(gc, frameNum, step);
+        }
+        dirty.clear();
+    }
+
+    // Draws the frame's cell, step cells wide when several frames share a pixel
+    private void drawFrame(GraphicsContext gc, int frameNum, int step) {
+        double x = panX + (frameNum % columns) * cell;
+        double y = panY + (frameNum / columns) * cell;
+        double size = Math.max(cell * step, 1);
+        if (x + size < 0 || y + size < 0 || x > getWidth() || y > getHeight()) {
+            return;
+        }
+        // Leave a gap between cells large enough to show one
+        double gap = cell >= 6 ? 1 : 0;
+        gc.setFill(BACKGROUND);
+        gc.fillRect(x, y, size, size);
+        gc.setFill(colorOf.apply(frameNum));
+        gc.fillRect(x, y, size - gap, size - gap);
+        if (cell >= MIN_LABEL_CELL) {
+            String label = labelOf.apply(frameNum);
+            if (label != null) {
+                gc.setFill(Color.WHITE);
+                gc.setFont(Font.font(Math.min(12, cell / 4)));
+                gc.setTextAlign(TextAlignment.CENTER);
+                gc.setTextBaseline(VPos.CENTER);
+                gc.fillText(label, x + cell / 2, y + cell / 2);
+            }
+        }
+    }
+}
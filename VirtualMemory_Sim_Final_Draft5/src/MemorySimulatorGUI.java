@@ -1,3 +1,4 @@
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -7,15 +8,28 @@ import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.StringConverter;
 import javafx.beans.property.SimpleStringProperty;
 import java.util.Optional;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
 import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleLongProperty;
+import java.util.function.ToLongFunction;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.io.File;
+import java.io.IOException;
 import javafx.scene.Node;
 import java.util.Collection;
-import java.util.Random;
+import java.util.Arrays;
 import java.util.Collection;
 
 
@@ -25,25 +39,95 @@ import java.util.Collection;
 
 public class MemorySimulatorGUI extends Application {
 
-    private static final int GRID_SIZE = 8; // The size of the grid
-    private static final int MEMORY_FRAMES = 64; // Total number of frames in memory
+    private MemoryConfig config; // Memory geometry, set from the command line (see MemoryConfig.fromArgs)
+    private OS.REPLACE_SCOPE scope; // Local or global replacement, set from the command line (--scope=)
+    private int readAhead; // Most pages read ahead of a sequential fault, set from the command line (--readahead=)
+    private OS.INIT_LOAD initLoad; // What new processes load before their first access, set from the command line (--init-load=)
+    private WorkloadSpec workloadSpec; // Seed and parameters of the generated workloads, set from the command line (--seed=, ...)
+    private SplitMix64 random; // Picks the pages of Random Page Replace, seeded with workloadSpec.seed
+    private int memoryFrames; // Total number of frames in memory
+    private int gridSize; // The number of columns of the grid, the grid is as square as possible
 
     private ToggleGroup policyToggleGroup;
 
     private Label totalRequestsLabel;
     private Label totalPageFaultsLabel;
+    private Label tlbHitRatioLabel;
+    private Label faultTimeLabel;
+    private Label readAheadLabel;
+    private TableView<ProcessStats.Snapshot> processStatsView; // One row per process, see OS.getStats
 
     private Stage primaryStage;
 
-    private GridPane memoryGrid; // Class-level variable to hold the memory grid
+    private MemoryMapCanvas memoryMap; // One cell per frame, coloured as mapColors says
+    private MapColors mapColors = MapColors.OWNER;
+    private Label frameInfoLabel; // Describes the frame under the mouse pointer
+
+    // Changes reported by the OS (see ViewUpdater) and not shown yet, and whether the next frame should refresh the views.
+    // Past MAX_PENDING_CHANGES, changes are dropped and the next refresh rebuilds the page tables instead (resync).
+    private final ConcurrentLinkedQueue<ViewChange> changes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private volatile boolean resync;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private static final int MAX_PENDING_CHANGES = 20000;
+
+    // Views are refreshed at most FRAME_RATE times a second by the render timer, whatever the rate of changes
+    private static final int FRAME_RATE = 30;
+    private static final long SAMPLE_NANOS = 250_000_000L; // Interval between sparkline samples and, during runs, stats refreshes
+    private static final int SPARKLINE_SAMPLES = 120;      // 30 seconds of samples
+    private AnimationTimer renderTimer;
+    private Sparkline requestRateLine;
+    private Sparkline faultRateLine;
+
+    // Auto-run: a workload run on a background thread (see AutoRunner), null until Run or Step is first pressed.
+    // The workload is generated with one of the locality models of WorkloadGenerator, or read from a trace file.
+    private static final String TRACE_WORKLOAD = "Trace file...";
+    private AutoRunner autoRunner;
+    private ComboBox<String> workloadSelector;
+    private Label autoRunLabel;
 
     private StackPane tableContainer; // Declaration of tableContainer
     private TableView<PageTableEntry> loadedPageTableView;
     private TableView<PageTableEntry> unloadedPageTableView;
+    private PageRows loadedRows;   // Rows of loadedPageTableView
+    private PageRows unloadedRows; // Rows of unloadedPageTableView
     private ComboBox<String> tableSelector;
 
+    // Deletes the swap file, if the OS has one
+    @Override
+    public void stop() {
+        if (renderTimer != null) {
+            renderTimer.stop();
+        }
+        if (autoRunner != null) {
+            autoRunner.shutdown();
+        }
+        if (os != null) {
+            os.close();
+        }
+    }
+
     @Override
     public void start(Stage primaryStage) {
+        String[] args = getParameters().getRaw().toArray(new String[0]);
+        try {
+            EventLog.configure(args, EventLog.Level.INFO);
+            config = MemoryConfig.fromArgs(args);
+            scope = OS.REPLACE_SCOPE.fromArgs(args);
+            readAhead = OS.readAheadFromArgs(args);
+            initLoad = OS.INIT_LOAD.fromArgs(args);
+            workloadSpec = WorkloadSpec.fromArgs(args);
+        } catch (IllegalArgumentException e) {
+            showAlert("Invalid memory configuration", e.getMessage());
+            config = MemoryConfig.DEFAULT;
+            scope = OS.REPLACE_SCOPE.LOCAL;
+            readAhead = 0;
+            initLoad = OS.INIT_LOAD.EAGER;
+            workloadSpec = WorkloadSpec.DEFAULT;
+        }
+        random = new SplitMix64(workloadSpec.seed);
+        memoryFrames = config.frameCount;
+        gridSize = (int) Math.ceil(Math.sqrt(memoryFrames));
 
         showPolicySelectionDialog(primaryStage);
     }
@@ -61,8 +145,8 @@ public class MemorySimulatorGUI extends Application {
         // Header with title and policy selection
         VBox header = createHeader();
 
-        // 8x8 grid for memory representation
-        VBox memoryGrid = createMemoryGrid();
+        // Map of the memory, one cell per frame
+        VBox memoryGrid = createMemoryMap();
 
         // VBox containing the page table and the ComboBox for column selection
         VBox pageTableBox = createPageTableContainer();
@@ -76,6 +160,7 @@ public class MemorySimulatorGUI extends Application {
         HBox controlPanel = createControlPanel();
         HBox destroyPanel = createDestroyProcessPanel(); // New control panel for destroying processes
         HBox pageReplacementPanel = createPageReplacementPanel(); // Control panel for replacing page
+        HBox autoRunPanel = createAutoRunPanel(); // Runs a workload in the background
 
         // Create the question mark button
         Button questionButton = new Button("?");
@@ -84,7 +169,7 @@ public class MemorySimulatorGUI extends Application {
         HBox bottomBox = new HBox(questionButton);
 
         VBox root = new VBox(10);
-        root.getChildren().addAll(header, statsPanel, mainLayout, controlPanel, pageReplacementPanel, randomReplaceButton, destroyPanel, bottomBox);
+        root.getChildren().addAll(header, statsPanel, mainLayout, controlPanel, pageReplacementPanel, randomReplaceButton, autoRunPanel, destroyPanel, bottomBox);
         root.setAlignment(Pos.TOP_CENTER);
         root.setPadding(new Insets(20));
         bottomBox.setAlignment(Pos.BOTTOM_LEFT);
@@ -94,6 +179,9 @@ public class MemorySimulatorGUI extends Application {
         primaryStage.setTitle("Virtual Memory Simulator");
         primaryStage.setScene(scene);
         primaryStage.show();
+
+        renderTimer = new RenderTimer();
+        renderTimer.start();
     }
 
 
@@ -102,7 +190,7 @@ public class MemorySimulatorGUI extends Application {
         Label titleLabel = new Label("Virtual Memory Simulator");
         titleLabel.setStyle("-fx-font-size: 20px; -fx-font-weight: bold;");
 
-        Label memoryInfoLabel = new Label("64K Memory with 64 Frames");
+        Label memoryInfoLabel = new Label(MemoryConfig.formatSize(config.memorySize) + " Memory with " + memoryFrames + " Frames");
         memoryInfoLabel.setStyle("-fx-font-size: 14px;");
 
         Label groupLabel = new Label("Group#666,Kaiyu Liu, Yiyang Hu, Yufan");
@@ -138,8 +226,8 @@ public class MemorySimulatorGUI extends Application {
         return header;
     }
 
-    private OS os = new OS(); // Declare an instance variable for the OS class
-    private Memory memory = os.memory;
+    private OS os; // Declare an instance variable for the OS class, created in start() once the configuration is known
+    private Memory memory;
 
     private void showPolicySelectionDialog(Stage primaryStage) {
 
@@ -148,66 +236,124 @@ public class MemorySimulatorGUI extends Application {
         dialog.setTitle("Select Replacement Policy");
         dialog.setHeaderText("Please select the replacement policy:");
 
-        // Add buttons
-        ButtonType fifoButtonType = new ButtonType("FIFO", ButtonBar.ButtonData.OK_DONE);
-        ButtonType lruButtonType = new ButtonType("LRU", ButtonBar.ButtonData.OK_DONE);
-        dialog.getDialogPane().getButtonTypes().addAll(fifoButtonType, lruButtonType);
+        // Add one button per policy
+        Map<ButtonType, OS.REPLACE_POLICY> policyButtons = new LinkedHashMap<>();
+        for (OS.REPLACE_POLICY policy : OS.REPLACE_POLICY.values()) {
+            policyButtons.put(new ButtonType(policy.label(), ButtonBar.ButtonData.OK_DONE), policy);
+        }
+        dialog.getDialogPane().getButtonTypes().addAll(policyButtons.keySet());
 
         // Set result converter for button types
-        dialog.setResultConverter(buttonType -> {
-            if (buttonType == fifoButtonType) {
-                return OS.REPLACE_POLICY.FIFO;
-            } else if (buttonType == lruButtonType) {
-                return OS.REPLACE_POLICY.LRU;
-            }
-            return null;
-        });
+        dialog.setResultConverter(policyButtons::get);
 
         // Show dialog and wait for response
         Optional<OS.REPLACE_POLICY> result = dialog.showAndWait();
         result.ifPresent(policy -> {
-            os.setReplacePolicy(policy); // Set the replacement policy
+            OS.setReplacePolicy(policy); // Set the replacement policy
+            // Create the OS now, so that under global replacement it uses the chosen policy across all frames
+            os = new OS(config, scope);
+            os.setReadAhead(readAhead);
+            os.setInitLoad(initLoad);
+            memory = os.memory;
             showMainGUI(primaryStage);   // Show the main GUI window
+            os.addListener(new ViewUpdater()); // Keep the page tables and memory grid up to date from now on
         });
     }
 
-    private VBox createMemoryGrid() {
-        memoryGrid = new GridPane();
-        memoryGrid.setPadding(new Insets(10));
-        memoryGrid.setHgap(10); // Horizontal gap
-        memoryGrid.setVgap(10); // Vertical gap
+    // What the colour of a frame in the memory map shows
+    private enum MapColors {
+        OWNER("Owner"), RECENCY("Recency"), DIRTY("Dirty pages");
 
-        // Initialize all cells as "Free"
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                StackPane frameVisual = createFrameVisual("Free");
-                memoryGrid.add(frameVisual, j, i);
-            }
+        private final String label;
+
+        MapColors(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
         }
+    }
+
+    private static final Color FREE_COLOR = Color.GREY;
+    private static final Color EMPTY_COLOR = Color.DARKGREY; // Reserved by a process but holding no page yet
+    private static final Color CLEAN_COLOR = Color.STEELBLUE;
+    private static final Color DIRTY_COLOR = Color.DARKORANGE;
+    private static final int RECENCY_HORIZON = 256; // Pages unused for this many accesses of their process are coldest
+
+    private VBox createMemoryMap() {
+        memoryMap = new MemoryMapCanvas(memoryFrames, 360, 360);
+        memoryMap.setColors(this::frameColor, this::frameLabel);
+
+        ComboBox<MapColors> colorSelector = new ComboBox<>(FXCollections.observableArrayList(MapColors.values()));
+        colorSelector.setValue(mapColors);
+        colorSelector.setOnAction(event -> {
+            mapColors = colorSelector.getValue();
+            memoryMap.setColors(this::frameColor, this::frameLabel);
+        });
+
+        frameInfoLabel = new Label("Scroll to zoom, drag to pan");
+        memoryMap.setHoverListener(frameNum -> frameInfoLabel.setText(frameNum < 0 ? "" : describeFrame(frameNum)));
 
-        VBox vbox = new VBox(10); // Vertical spacing
-        vbox.getChildren().addAll(new Label("Memory"), memoryGrid);
+        HBox title = new HBox(10, new Label("Memory"), colorSelector);
+        title.setAlignment(Pos.CENTER_LEFT);
+        VBox vbox = new VBox(10, title, memoryMap, frameInfoLabel); // Vertical spacing
         return vbox;
     }
 
-    private StackPane createFrameVisual(String label) {
-        StackPane frameVisual = new StackPane();
-        frameVisual.setStyle("-fx-border-color: black; -fx-background-color: grey;");
-        frameVisual.setPrefSize(50, 50);
+    // Colour of a frame in the memory map: free, reserved but empty, or its page as mapColors says
+    private Color frameColor(int frameNum) {
+        Frame frame = memory.getFrame(frameNum);
+        PCB owner = frame.isUsed() ? os.getProcess(frame.getOwner()) : null;
+        if (owner == null) {
+            return FREE_COLOR;
+        }
+        if (frame.getPageNumber() < 0) {
+            return EMPTY_COLOR;
+        }
+        PageTable table = owner.STable[frame.getSegmentNumber()].PTable;
+        switch (mapColors) {
+            case RECENCY:
+                // Hot (red) for the page just used, to cold (blue) for pages unused for RECENCY_HORIZON accesses
+                long age = Math.max(0, owner.getClock() - table.usedTime(frame.getPageNumber()));
+                double cold = Math.min(1, Math.log1p(age) / Math.log1p(RECENCY_HORIZON));
+                return Color.hsb(10 + 210 * cold, 0.85, 0.95 - 0.45 * cold);
+            case DIRTY:
+                return table.isDirty(frame.getPageNumber()) ? DIRTY_COLOR : CLEAN_COLOR;
+            default:
+                // Spread the hues of consecutive process handles around the colour wheel
+                return Color.hsb((frame.getOwner() * 137.508) % 360, 0.6, 0.75);
+        }
+    }
 
-        Label frameLabel = new Label(label);
-        frameLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: white;");
-        StackPane.setAlignment(frameLabel, Pos.BOTTOM_CENTER);
+    // Label of a frame in the memory map, shown when zoomed in far enough
+    private String frameLabel(int frameNum) {
+        Frame frame = memory.getFrame(frameNum);
+        PCB owner = frame.isUsed() ? os.getProcess(frame.getOwner()) : null;
+        return owner != null ? owner.id : "Free";
+    }
 
-        frameVisual.getChildren().add(frameLabel);
-        return frameVisual;
+    private String describeFrame(int frameNum) {
+        Frame frame = memory.getFrame(frameNum);
+        PCB owner = frame.isUsed() ? os.getProcess(frame.getOwner()) : null;
+        if (owner == null) {
+            return "Frame " + frameNum + ": free";
+        }
+        if (frame.getPageNumber() < 0) {
+            return "Frame " + frameNum + ": reserved by " + owner.id + ", empty";
+        }
+        PageTable table = owner.STable[frame.getSegmentNumber()].PTable;
+        return "Frame " + frameNum + ": " + owner.id + ", segment " + frame.getSegmentNumber() + ", page " + frame.getPageNumber()
+                + (table.isDirty(frame.getPageNumber()) ? ", dirty" : ", clean") + ", used "
+                + (owner.getClock() - table.usedTime(frame.getPageNumber())) + " accesses ago";
     }
 
     private Frame[][] swap(Frame[] frames){
-        Frame[][] res = new Frame[8][8];
+        Frame[][] res = new Frame[(frames.length + gridSize - 1) / gridSize][gridSize];
         int indexOfFrames = 0;
-        for(int i = 0; i < 8; i++){
-            for(int j = 0; j < 8; j++){
+        for(int i = 0; i < res.length; i++){
+            for(int j = 0; j < gridSize && indexOfFrames < frames.length; j++){
                 if(frames[indexOfFrames].used){
                     res[i][j] = frames[indexOfFrames];
                 }
@@ -226,7 +372,7 @@ public class MemorySimulatorGUI extends Application {
     private VBox createFrameLabels() {
         VBox labelsBox = new VBox();
         labelsBox.setSpacing(5);
-        for (int i = 0; i < MEMORY_FRAMES; i++) {
+        for (int i = 0; i < memoryFrames; i++) {
             Label label = new Label("Frame " + i + ": Free");
             label.setPadding(new Insets(2));
             label.setStyle("-fx-font-size: 10px;");
@@ -265,6 +411,10 @@ public class MemorySimulatorGUI extends Application {
         // Initialize both tables
         loadedPageTableView = createPageTable();
         unloadedPageTableView = createPageTable();
+        loadedRows = new PageRows();
+        unloadedRows = new PageRows();
+        loadedPageTableView.setItems(loadedRows.items);
+        unloadedPageTableView.setItems(unloadedRows.items);
 
         // Initialize selector
         tableSelector = new ComboBox<>();
@@ -325,12 +475,12 @@ public class MemorySimulatorGUI extends Application {
         TextField processNameField = new TextField();
         processNameField.setPrefWidth(100); // Set preferred width for better layout
 
-        Label[] segmentLabels = new Label[4];
-        TextField[] segmentFields = new TextField[4]; // Array to store segment TextFields
+        Label[] segmentLabels = new Label[config.maxSegmentNum];
+        TextField[] segmentFields = new TextField[config.maxSegmentNum]; // Array to store segment TextFields
         HBox nameBox = new HBox(5, processNameLabel, processNameField);
 
         HBox segmentBoxes = new HBox(5);
-        for (int i = 0; i < 4; i++) {
+        for (int i = 0; i < config.maxSegmentNum; i++) {
             Label segmentLabel = new Label("Segment " + (i + 1) + ":");
             TextField segmentField = new TextField();
             segmentField.setPrefWidth(50); // Set preferred width for segment fields
@@ -338,10 +488,26 @@ public class MemorySimulatorGUI extends Application {
             segmentBoxes.getChildren().add(new HBox(5, segmentLabel, segmentField));
         }
 
+        // Replacement policy of the new process, starting at the one chosen in the policy dialog
+        ComboBox<OS.REPLACE_POLICY> policySelector = new ComboBox<>(FXCollections.observableArrayList(OS.REPLACE_POLICY.values()));
+        policySelector.setValue(OS.ReplacePolicy);
+        policySelector.setConverter(new StringConverter<OS.REPLACE_POLICY>() {
+            @Override
+            public String toString(OS.REPLACE_POLICY policy) {
+                return policy == null ? "" : policy.label();
+            }
+
+            @Override
+            public OS.REPLACE_POLICY fromString(String label) {
+                return OS.REPLACE_POLICY.parse(label);
+            }
+        });
+        HBox policyBox = new HBox(5, new Label("Policy:"), policySelector);
+
         Button createProcessButton = new Button("Create Process");
-        createProcessButton.setOnAction(event -> handleCreateProcess(processNameField.getText(), segmentFields));
+        createProcessButton.setOnAction(event -> handleCreateProcess(processNameField.getText(), segmentFields, policySelector.getValue()));
 
-        HBox controlPanel = new HBox(10, nameBox, segmentBoxes, createProcessButton);
+        HBox controlPanel = new HBox(10, nameBox, segmentBoxes, policyBox, createProcessButton);
         controlPanel.setAlignment(Pos.CENTER);
 
         return controlPanel;
@@ -350,7 +516,7 @@ public class MemorySimulatorGUI extends Application {
 
 
     // Handler method for the create process button
-    private void handleCreateProcess(String processId, TextField[] segmentFields) {
+    private void handleCreateProcess(String processId, TextField[] segmentFields, OS.REPLACE_POLICY policy) {
         List<Integer> segmentList = new ArrayList<>();
 
         // Debugging: Print the state of each element in segmentFields
@@ -364,8 +530,8 @@ public class MemorySimulatorGUI extends Application {
                     throw new IllegalArgumentException("Segment field " + (i + 1) + " is not initialized.");
                 }
                 int segmentSize = Integer.parseInt(segmentFields[i].getText());
-                if (segmentSize < 0 || segmentSize > 16384) {
-                    throw new IllegalArgumentException("Segment size must be a non-negative integer and less than or equal to 16384KB.");
+                if (segmentSize < 0 || segmentSize > config.maxSegmentSize) {
+                    throw new IllegalArgumentException("Segment size must be a non-negative integer and less than or equal to " + config.maxSegmentSize + " bytes.");
                 }
                 if (segmentSize > 0) {
                     segmentList.add(segmentSize);
@@ -378,7 +544,7 @@ public class MemorySimulatorGUI extends Application {
 
         int[] segments = segmentList.stream().mapToInt(i -> i).toArray();
 
-        boolean success = os.createProcess(processId, segments);
+        boolean success = os.createProcess(processId, segments, policy);
         /**
          * if (success) {
             showAlert("Success", "Process creation successful: " + processId);
@@ -400,15 +566,8 @@ public class MemorySimulatorGUI extends Application {
          **/
 
         if (success) {
+            // The page tables and memory grid follow from the OS's notifications, see ViewUpdater
             showAlert("Success", "Process creation successful: " + processId);
-            Platform.runLater(() -> {
-                updatePageTable(); // Assuming this is the correct method to update the loaded pages table
-                loadedPageTableView.refresh(); // Refresh the correct TableView
-                updateUnloadedPageTable();
-                updateStats();
-                unloadedPageTableView.refresh(); // Refresh the unloaded page table
-                updateMemoryGrid();
-            });
         } else {
             showAlert("Failure", "Failed to create process.");
         }
@@ -469,12 +628,6 @@ public class MemorySimulatorGUI extends Application {
         }
         os.destroyProcess(processName);
         showAlert("Success", "Process destruction successful: " + processName);
-        updatePageTable(); // Assuming this is the correct method to update the loaded pages table
-        loadedPageTableView.refresh(); // Refresh the correct TableView
-        updateUnloadedPageTable();
-        updateStats();
-        unloadedPageTableView.refresh(); // Refresh the unloaded page table
-        updateMemoryGrid();
     }
 
     private HBox createPageReplacementPanel(){
@@ -490,18 +643,20 @@ public class MemorySimulatorGUI extends Application {
         TextField pageNumField = new TextField();
         pageNumField.setPrefWidth(50);
 
+        CheckBox writeCheckBox = new CheckBox("Write"); // Marks the page dirty, so its eviction writes it back
+
         Button pageReplaceButton = new Button("Replace Page");
         pageReplaceButton.setOnAction(event -> handlePageReplacement(processIDField.getText(), segmentNumField.getText(),
-                pageNumField.getText()));
+                pageNumField.getText(), writeCheckBox.isSelected() ? OS.ACCESS_TYPE.WRITE : OS.ACCESS_TYPE.READ));
 
         HBox PageReplacementPanel = new HBox(10, processIDLabel, processIDField, segmentNumLabel, segmentNumField
-                , pageNumLabel, pageNumField, pageReplaceButton);
+                , pageNumLabel, pageNumField, writeCheckBox, pageReplaceButton);
         PageReplacementPanel.setAlignment(Pos.CENTER);
 
         return PageReplacementPanel;
     }
 
-    private void handlePageReplacement(String processId, String segmentNum, String pageNum){
+    private void handlePageReplacement(String processId, String segmentNum, String pageNum, OS.ACCESS_TYPE type){
         //Does not exist the Process
         PCB process = os.getProcesses().get(processId);
 
@@ -510,10 +665,10 @@ public class MemorySimulatorGUI extends Application {
             if(process == null) {
                 throw new IllegalArgumentException("Operation failed, process " + processId + " does not exist");
             }
-            if(Integer.parseInt(segmentNum) < 0 || Integer.parseInt(segmentNum) > 3){
+            if(Integer.parseInt(segmentNum) < 0 || Integer.parseInt(segmentNum) >= config.maxSegmentNum){
                 throw new IllegalArgumentException("Invalid segment number");
             }
-            if(Integer.parseInt(pageNum) < 0 || Integer.parseInt(pageNum) > 15){
+            if(Integer.parseInt(pageNum) < 0 || Integer.parseInt(pageNum) >= config.pageCount(config.maxSegmentSize)){
                 throw new IllegalArgumentException("Invalid page number");
             }
         } catch (IllegalArgumentException e) {
@@ -522,109 +677,259 @@ public class MemorySimulatorGUI extends Application {
         }
 
         //Valid Input, execute replacePage()
-        os.pageReplace(processId, Integer.parseInt(segmentNum), Integer.parseInt(pageNum));
+        os.pageReplace(processId, Integer.parseInt(segmentNum), Integer.parseInt(pageNum), type);
         showAlert("Success", "page replacement successful: " + "page(" + pageNum + ")" + " in " +
                 "segment(" + segmentNum + ")" +" is loaded.");
-        updatePageTable(); // method to update the loaded pages table
-        loadedPageTableView.refresh(); // Refresh the correct TableView
-        updateUnloadedPageTable();
-        updateStats();
-        unloadedPageTableView.refresh(); // Refresh the unloaded page table
-        updateMemoryGrid();
-
-    }
-
-    /*
-    // Method to update the page table data
-    private void updatePageTable() {
-        ObservableList<PageTableEntry> data = FXCollections.observableArrayList();
-        // Iterate over memory frames and update the list
-        for (Frame frame : memory.getMemory()) {
-            if (frame.isUsed()) {
-                // Extract process ID, page number, segment number, and frame number
-                String processId = frame.getProcessId();
-                int pageNumber = frame.getPageNumber();
-                int segmentNumber = frame.getSegmentNumber();
-                int frameNumber = frame.getFrameNum();
-                data.add(new PageTableEntry(processId, pageNumber, segmentNumber, frameNumber));
-            }
+        scheduleRefresh(); // A hit changes no page, but still changes the stats and the page's recency
+
+    }
+
+    // What happened to a page or process, recorded by ViewUpdater and shown by refreshViews
+    private enum ChangeKind { LOADED, UNLOADED, RELEASED, CREATED, DESTROYED }
+
+    private static class ViewChange {
+        final ChangeKind kind;
+        final PCB process;
+        final int segmentNum;
+        final int pageNum;
+        final int frameNum; // LOADED: the frame the page is in; UNLOADED: the frame it left, -1 if it was never loaded;
+                            // RELEASED: the empty frame freed
+        final int[] frames; // CREATED, DESTROYED: the frames of the process
+
+        ViewChange(ChangeKind kind, PCB process, int segmentNum, int pageNum, int frameNum, int[] frames) {
+            this.kind = kind;
+            this.process = process;
+            this.segmentNum = segmentNum;
+            this.pageNum = pageNum;
+            this.frameNum = frameNum;
+            this.frames = frames;
         }
-        pageTableView.setItems(data); // Update the TableView's items
     }
-     */
 
-    private void updatePageTable() {
-        ObservableList<PageTableEntry> data = FXCollections.observableArrayList();
+    // Records the OS's changes as they happen, on whichever thread makes them, for the next frame to show
+    private class ViewUpdater implements OSListener {
+        @Override
+        public void processCreated(PCB process) {
+            for (SegmentEntry segment : process.STable) {
+                for (int pageNum = 0; pageNum < segment.PTable.length(); pageNum++) {
+                    boolean loaded = segment.PTable.isLoaded(pageNum);
+                    record(new ViewChange(loaded ? ChangeKind.LOADED : ChangeKind.UNLOADED, process, segment.segmentNum,
+                            pageNum, loaded ? segment.PTable.frameOf(pageNum) : -1, null));
+                }
+            }
+            record(new ViewChange(ChangeKind.CREATED, process, -1, -1, -1, process.residentFrames()));
+        }
 
-        // A way to get all active PCB instances, e.g., a list or map in OS class
-        Collection<PCB> allPcbs = os.getAllActivePCBs(); // This method needs to be implemented in OS class
+        @Override
+        public void processDestroyed(PCB process) {
+            record(new ViewChange(ChangeKind.DESTROYED, process, -1, -1, -1, process.residentFrames()));
+        }
 
-        for (PCB pcb : allPcbs) {
-            for (int frameNum : pcb.residentSet) {
-                Frame frame = memory.getFrame(frameNum);
-                if (frame != null && frame.isUsed()) {
-                    for (SegmentEntry segment : pcb.STable) {
-                        for (PageEntry page : segment.PTable) {
-                            if (page.frameNum == frameNum && page.load) {
-                                data.add(new PageTableEntry(pcb.id, page.pageNum, segment.segmentNum, frameNum));
-                            }
-                        }
-                    }
+        @Override
+        public void pageLoaded(PCB process, int segmentNum, int pageNum, int frameNum) {
+            record(new ViewChange(ChangeKind.LOADED, process, segmentNum, pageNum, frameNum, null));
+        }
+
+        @Override
+        public void pageEvicted(PCB process, int segmentNum, int pageNum, int frameNum) {
+            record(new ViewChange(ChangeKind.UNLOADED, process, segmentNum, pageNum, frameNum, null));
+        }
+
+        @Override
+        public void frameReleased(PCB process, int frameNum) {
+            record(new ViewChange(ChangeKind.RELEASED, process, -1, -1, frameNum, null));
+        }
+
+        // Queues the change, unless too many are pending already: the views then resync from the page tables
+        private void record(ViewChange change) {
+            if (!resync) {
+                if (pendingChanges.incrementAndGet() > MAX_PENDING_CHANGES) {
+                    resync = true;
+                } else {
+                    changes.add(change);
                 }
             }
+            scheduleRefresh();
         }
+    }
 
-        loadedPageTableView.setItems(data); // Update the TableView's items
+    // Refreshes the views at the next frame
+    private void scheduleRefresh() {
+        refreshPending.set(true);
     }
 
+    // Refreshes the views at most FRAME_RATE times a second, and samples the request and fault rates for the sparklines.
+    // While a workload runs, every frame redraws the memory map, but the statistics, which copy the counters of every
+    // process, are only refreshed with each sample, and only if requests were made since the last refresh.
+    private class RenderTimer extends AnimationTimer {
+        private long lastFrame;
+        private long lastSample;
+        private long lastRequests;
+        private long lastFaults;
+        private long statsRequests = -1; // Total requests shown by the last updateStats
+
+        @Override
+        public void handle(long now) {
+            if (now - lastFrame < 1_000_000_000L / FRAME_RATE) {
+                return;
+            }
+            lastFrame = now;
+            boolean running = autoRunner != null && autoRunner.isRunning();
+            if (refreshPending.getAndSet(false) || running) {
+                refreshViews();
+                if (!running) {
+                    statsRequests = updateStats(); // A change made by hand: show its counts at once
+                }
+            }
 
-    private void updateUnloadedPageTable() {
-        ObservableList<PageTableEntry> data = FXCollections.observableArrayList();
+            if (now - lastSample >= SAMPLE_NANOS) {
+                long requests = os.getTotalRequest();
+                long faults = os.getPageFault();
+                if (lastSample != 0) {
+                    long newRequests = requests - lastRequests;
+                    requestRateLine.add(newRequests * 1e9 / (now - lastSample));
+                    faultRateLine.add(newRequests == 0 ? 0 : 100.0 * (faults - lastFaults) / newRequests);
+                }
+                lastSample = now;
+                lastRequests = requests;
+                lastFaults = faults;
+                if (requests != statsRequests) {
+                    statsRequests = updateStats();
+                }
+                autoRunLabel.setText(autoRunner == null ? "Stopped" : running ? "Running" : autoRunner.isFinished() ? "Finished" : "Paused");
+            }
+        }
+    }
 
-        // Assuming you have a method to get all active PCBs
-        Collection<PCB> allPcbs = os.getAllActivePCBs();
+    // Applies the recorded changes to the page tables, then redraws the memory map cells of the frames involved
+    // (all of them when colouring by recency or dirty state, which also change on hits)
+    private void refreshViews() {
+        if (resync) {
+            resyncPageRows();
+        }
+        ViewChange change;
+        while ((change = changes.poll()) != null) {
+            pendingChanges.decrementAndGet();
+            switch (change.kind) {
+                case LOADED:
+                    unloadedRows.remove(change.process, change.segmentNum, change.pageNum);
+                    loadedRows.put(change.process, change.segmentNum, change.pageNum, change.frameNum);
+                    memoryMap.markDirty(change.frameNum);
+                    break;
+                case UNLOADED:
+                    loadedRows.remove(change.process, change.segmentNum, change.pageNum);
+                    unloadedRows.put(change.process, change.segmentNum, change.pageNum, -1);
+                    if (change.frameNum >= 0) {
+                        memoryMap.markDirty(change.frameNum);
+                    }
+                    break;
+                case RELEASED:
+                    memoryMap.markDirty(change.frameNum); // Free again
+                    break;
+                case CREATED:
+                    for (int frameNum : change.frames) {
+                        memoryMap.markDirty(frameNum);
+                    }
+                    break;
+                case DESTROYED:
+                    loadedRows.removeProcess(change.process);
+                    unloadedRows.removeProcess(change.process);
+                    for (int frameNum : change.frames) {
+                        memoryMap.markDirty(frameNum); // Free again
+                    }
+                    break;
+            }
+        }
+        if (mapColors != MapColors.OWNER) {
+            memoryMap.markAllDirty();
+        }
+        memoryMap.redraw();
+    }
 
-        for (PCB pcb : allPcbs) {
-            for (SegmentEntry segment : pcb.STable) {
-                for (PageEntry page : segment.PTable) {
-                    if (!page.load) { // Check if the page is not loaded
-                        int frameNumber = -1; // Frame number is not applicable for unloaded pages
-                        data.add(new PageTableEntry(pcb.id, page.pageNum, segment.segmentNum, frameNumber));
+    // Rebuilds the page tables from the processes' page tables, after ViewUpdater dropped changes
+    private void resyncPageRows() {
+        changes.clear();
+        pendingChanges.set(0);
+        resync = false; // Changes made from now on are recorded again, and applied after the rebuild
+        loadedRows.clear();
+        unloadedRows.clear();
+        for (PCB process : os.getAllActivePCBs()) {
+            for (SegmentEntry segment : process.STable) {
+                for (int pageNum = 0; pageNum < segment.PTable.length(); pageNum++) {
+                    if (segment.PTable.isLoaded(pageNum)) {
+                        loadedRows.put(process, segment.segmentNum, pageNum, segment.PTable.frameOf(pageNum));
+                    } else {
+                        unloadedRows.put(process, segment.segmentNum, pageNum, -1);
                     }
                 }
             }
         }
-
-        unloadedPageTableView.setItems(data); // Update the TableView's items
+        memoryMap.markAllDirty();
     }
 
+    // Rows of a page table view, at most one per page, patched in place as pages are loaded and evicted. Removing a
+    // row moves the last row into its place, so each change costs the same however many rows there are.
+    private class PageRows {
+        final ObservableList<PageTableEntry> items = FXCollections.observableArrayList();
+        private final Map<PCB, int[]> rowOf = new HashMap<>(); // Row of each virtual page of a process, -1 if none
+
+        // Shows the page as held in the frame (-1 for none), adding its row if it has none
+        void put(PCB process, int segmentNum, int pageNum, int frameNum) {
+            int[] rows = rowOf.computeIfAbsent(process, p -> {
+                int[] none = new int[p.pageCount];
+                Arrays.fill(none, -1);
+                return none;
+            });
+            int virtualPage = process.virtualPage(segmentNum, pageNum);
+            if (rows[virtualPage] >= 0) {
+                items.get(rows[virtualPage]).frameNumber.set(frameNum);
+                return;
+            }
+            PageTableEntry row = new PageTableEntry(process.id, pageNum, segmentNum, frameNum);
+            row.process = process;
+            row.virtualPage = virtualPage;
+            rows[virtualPage] = items.size();
+            items.add(row);
+        }
 
-    private void updateMemoryGrid() {
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                int frameIndex = i * GRID_SIZE + j;
-                Frame frame = memory.getFrame(frameIndex);
-                StackPane frameVisual = (StackPane) getNodeFromGridPane(memoryGrid, j, i);
+        void remove(PCB process, int segmentNum, int pageNum) {
+            int[] rows = rowOf.get(process);
+            if (rows != null) {
+                removeRow(rows, process.virtualPage(segmentNum, pageNum));
+            }
+        }
+
+        void clear() {
+            items.clear();
+            rowOf.clear();
+        }
 
-                String label = frame != null && frame.isUsed() ? frame.getId() : "Free";
-                Label frameLabel = (Label) frameVisual.getChildren().get(0);
-                frameLabel.setText(label);
+        void removeProcess(PCB process) {
+            int[] rows = rowOf.get(process);
+            if (rows != null) {
+                for (int virtualPage = 0; virtualPage < rows.length; virtualPage++) {
+                    removeRow(rows, virtualPage);
+                }
+                rowOf.remove(process);
             }
         }
-    }
 
-    private Node getNodeFromGridPane(GridPane gridPane, int col, int row) {
-        for (Node node : gridPane.getChildren()) {
-            if (GridPane.getColumnIndex(node) == col && GridPane.getRowIndex(node) == row) {
-                return node;
+        private void removeRow(int[] rows, int virtualPage) {
+            int row = rows[virtualPage];
+            if (row < 0) {
+                return;
+            }
+            rows[virtualPage] = -1;
+            PageTableEntry last = items.remove(items.size() - 1);
+            if (row < items.size()) {
+                items.set(row, last);
+                rowOf.get(last.process)[last.virtualPage] = row;
             }
         }
-        return null;
     }
 
     // Method to request a random page replacement
         private void randomPageReplace() {
-            Random random = new Random();
             try {
                 Collection<PCB> allPcbs = os.getAllActivePCBs();
                 PCB[] pcbArray = allPcbs.toArray(new PCB[0]);
@@ -641,19 +946,14 @@ public class MemorySimulatorGUI extends Application {
                 }
                 SegmentEntry selectedSegment = selectedPCB.STable[random.nextInt(selectedPCB.STable.length)];
 
-                if (selectedSegment.PTable.length == 0) {
+                if (selectedSegment.PTable.length() == 0) {
                     showAlert("No pages", "The selected segment has no pages.");
                     return;
                 }
-                int pageNum = random.nextInt(selectedSegment.PTable.length);
+                int pageNum = random.nextInt(selectedSegment.PTable.length());
 
                 os.pageReplace(selectedPCB.id, selectedSegment.segmentNum, pageNum);
-                updatePageTable(); // A method to update the loaded pages table
-                loadedPageTableView.refresh(); // Refresh the correct TableView
-                updateUnloadedPageTable();
-                updateStats();
-                unloadedPageTableView.refresh(); // Refresh the unloaded page table
-                updateMemoryGrid();
+                scheduleRefresh(); // A hit changes no page, but still changes the stats and the page's recency
 
             } catch (Exception e) {
                 showAlert("Error", "An error occurred during random page replacement: " + e.getMessage());
@@ -661,25 +961,142 @@ public class MemorySimulatorGUI extends Application {
             }
         }
 
+    // Run, pause and step controls of the background workload, with its state
+    private HBox createAutoRunPanel() {
+        workloadSelector = new ComboBox<>();
+        for (WorkloadGenerator.LOCALITY locality : WorkloadGenerator.LOCALITY.values()) {
+            workloadSelector.getItems().add(locality.name().toLowerCase());
+        }
+        workloadSelector.getItems().add(TRACE_WORKLOAD);
+        workloadSelector.setValue(workloadSpec.locality.name().toLowerCase());
+        workloadSelector.setOnAction(event -> stopAutoRun()); // The next Run or Step starts the selected workload
+
+        Button runButton = new Button("Run");
+        runButton.setOnAction(event -> {
+            if (prepareAutoRun()) {
+                autoRunner.run();
+            }
+        });
+        Button pauseButton = new Button("Pause");
+        pauseButton.setOnAction(event -> {
+            if (autoRunner != null) {
+                autoRunner.pause();
+            }
+        });
+        Button stepButton = new Button("Step");
+        stepButton.setOnAction(event -> {
+            if (prepareAutoRun()) {
+                autoRunner.step(1);
+            }
+        });
+        autoRunLabel = new Label("Stopped");
+
+        HBox autoRunPanel = new HBox(10, new Label("Workload:"), workloadSelector, runButton, pauseButton, stepButton, autoRunLabel);
+        autoRunPanel.setAlignment(Pos.CENTER);
+        return autoRunPanel;
+    }
+
+    // Creates the runner of the selected workload unless one is ready; returns false if none could be
+    private boolean prepareAutoRun() {
+        if (autoRunner != null && !autoRunner.isFinished()) {
+            return true;
+        }
+        stopAutoRun();
+        Workload workload;
+        if (TRACE_WORKLOAD.equals(workloadSelector.getValue())) {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Open Trace");
+            File file = chooser.showOpenDialog(primaryStage);
+            if (file == null) {
+                return false;
+            }
+            TraceReplayer replayer = new TraceReplayer(os);
+            try {
+                replayer.open(file.toPath());
+            } catch (IOException e) {
+                showAlert("Cannot open trace", e.getMessage());
+                return false;
+            }
+            workload = replayer;
+        } else {
+            // Runs until paused, over the processes active now; the same seed makes the same accesses each time
+            WorkloadGenerator.LOCALITY locality = WorkloadGenerator.LOCALITY.parse(workloadSelector.getValue());
+            workload = new WorkloadGenerator(os, os.getAllActivePCBs(), workloadSpec.with(locality, workloadSpec.seed, Long.MAX_VALUE));
+        }
+        autoRunner = new AutoRunner(workload, failure -> Platform.runLater(() -> {
+            if (failure != null) {
+                showAlert("Workload failed", String.valueOf(failure.getMessage()));
+            }
+        }));
+        return true;
+    }
+
+    private void stopAutoRun() {
+        if (autoRunner != null) {
+            autoRunner.shutdown();
+            autoRunner = null;
+        }
+    }
+
     private VBox createStatsPanel() {
         // Initialize labels with default text
         totalRequestsLabel = new Label("Total Number of Requests: 0");
         totalPageFaultsLabel = new Label("Total Number of Page Faults: 0");
+        tlbHitRatioLabel = new Label("TLB Hit Ratio: 0.00%");
+        faultTimeLabel = new Label("Fault Service Time: -");
+        readAheadLabel = new Label("Read-ahead: off");
+
+        processStatsView = new TableView<>();
+        TableColumn<ProcessStats.Snapshot, String> idColumn = new TableColumn<>("Process ID");
+        idColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().id));
+        processStatsView.getColumns().add(idColumn);
+        processStatsView.getColumns().add(statsColumn("Requests", s -> s.total(ProcessStats.Counter.REQUESTS)));
+        processStatsView.getColumns().add(statsColumn("Writes", s -> s.total(ProcessStats.Counter.WRITES)));
+        processStatsView.getColumns().add(statsColumn("Hits", s -> s.total(ProcessStats.Counter.REQUESTS) - s.total(ProcessStats.Counter.FAULTS)));
+        processStatsView.getColumns().add(statsColumn("Faults", s -> s.total(ProcessStats.Counter.FAULTS)));
+        processStatsView.getColumns().add(statsColumn("Clean Evictions", s -> s.total(ProcessStats.Counter.CLEAN_EVICTIONS)));
+        processStatsView.getColumns().add(statsColumn("Dirty Evictions", s -> s.total(ProcessStats.Counter.DIRTY_EVICTIONS)));
+        processStatsView.getColumns().add(statsColumn("Read Ahead", s -> s.total(ProcessStats.Counter.PREFETCHES)));
+        processStatsView.getColumns().add(statsColumn("Read-Ahead Hits", s -> s.total(ProcessStats.Counter.PREFETCH_HITS)));
+        processStatsView.getColumns().add(statsColumn("Fault p50 (ns)", s -> s.faultTime.getValueAtPercentile(50)));
+        processStatsView.getColumns().add(statsColumn("Fault p99 (ns)", s -> s.faultTime.getValueAtPercentile(99)));
+        processStatsView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        processStatsView.setPrefHeight(150);
+
+        requestRateLine = new Sparkline("Requests", "%.0f/s", SPARKLINE_SAMPLES, 240, 50);
+        faultRateLine = new Sparkline("Page faults", "%.1f%%", SPARKLINE_SAMPLES, 240, 50);
 
         // Update labels with current data
         updateStats();
 
         // Create a VBox to hold the stats
-        VBox statsPanel = new VBox(10, totalRequestsLabel, totalPageFaultsLabel);
+        HBox rates = new HBox(20, requestRateLine, faultRateLine);
+        VBox statsPanel = new VBox(10, totalRequestsLabel, totalPageFaultsLabel, tlbHitRatioLabel, faultTimeLabel, readAheadLabel, rates, processStatsView);
         statsPanel.setAlignment(Pos.CENTER_LEFT);
         statsPanel.setPadding(new Insets(10));
 
         return statsPanel;
     }
 
-    private void updateStats() {
-        totalRequestsLabel.setText("Total Number of Requests: " + os.getTotalRequest());
-        totalPageFaultsLabel.setText("Total Number of Page Faults: " + os.getPageFault());
+    // Shows the current statistics; returns the total requests shown
+    private long updateStats() {
+        StatsSnapshot stats = os.getStats();
+        totalRequestsLabel.setText("Total Number of Requests: " + stats.requests);
+        totalPageFaultsLabel.setText("Total Number of Page Faults: " + stats.faults);
+        tlbHitRatioLabel.setText(String.format("TLB Hit Ratio: %.2f%%", os.getTlbHitRatio() * 100));
+        faultTimeLabel.setText("Fault Service Time: " + stats.faultTime);
+        if (readAhead > 0) {
+            readAheadLabel.setText(stats.formatReadAhead());
+        }
+        processStatsView.getItems().setAll(stats.processes);
+        return stats.requests;
+    }
+
+    // A column of the process statistics table showing one number of each process
+    private static TableColumn<ProcessStats.Snapshot, Number> statsColumn(String title, ToLongFunction<ProcessStats.Snapshot> value) {
+        TableColumn<ProcessStats.Snapshot, Number> column = new TableColumn<>(title);
+        column.setCellValueFactory(cellData -> new SimpleLongProperty(value.applyAsLong(cellData.getValue())));
+        return column;
     }
 
 
@@ -691,6 +1108,8 @@ class PageTableEntry {
     private SimpleIntegerProperty pageNumber;
     private SimpleIntegerProperty segmentNumber;
     private SimpleIntegerProperty frameNumber;
+    private PCB process;     // The process and virtual page of the row, see PageRows
+    private int virtualPage;
 
     public PageTableEntry(String processId, int pageNumber, int segmentNumber, int frameNumber) {
         this.processId = new SimpleStringProperty(processId);
@@ -1,27 +1,180 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Map;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 public class OS {
-    public static final int memorySize = 64 * 1024;		//Memory size
-    public static final int pageSize = 1 * 1024;		//Page size, a power of 2 for simplified address translation
-    public static final int maxSegmentNum = 4;			//Maximum number of segments in a program
-    public static final int maxSegmentSize = 16 * 1024;	//Maximum size of a segment
-    public static final int maxResidentSetNum = 8;		//Maximum number of pages in a process's resident set
-
-    private static final AtomicInteger TotalRequest = new AtomicInteger(0); //number keep track of the number of request made
-    private static final AtomicInteger PageFault = new AtomicInteger(0); //number keep track of the number of request made
-    public static enum REPLACE_POLICY {FIFO, LRU};
-    public static REPLACE_POLICY ReplacePolicy = REPLACE_POLICY.LRU;	// Default replacement policy is LRU
+    private final MemoryConfig config;	//Memory size, page size and per-process limits
+
+    private final LongAdder TotalRequest = new LongAdder(); //number keep track of the number of request made
+    private final LongAdder PageFault = new LongAdder(); //number keep track of the number of page faults
+    // Fault service times of destroyed processes, so getStats still covers them. Updated under processLock.
+    private final LatencyHistogram retiredFaultTime = new LatencyHistogram();
+    // Counter totals of destroyed processes, in segment 0. Updated under processLock.
+    private final ProcessStats retiredStats = new ProcessStats(1);
+    public static enum REPLACE_POLICY {
+        FIFO, LRU, CLOCK, LFU, TWO_Q, ARC;
+
+        // Creates the policy for a resident set of the given size
+        public ReplacementPolicy create(int capacity) {
+            switch (this) {
+                case FIFO:
+                    return new FifoPolicy(capacity);
+                case CLOCK:
+                    return new ClockPolicy(capacity);
+                case LFU:
+                    return new LfuPolicy(capacity);
+                case TWO_Q:
+                    return new TwoQPolicy(capacity);
+                case ARC:
+                    return new ArcPolicy(capacity);
+                default:
+                    return new LruPolicy(capacity);
+            }
+        }
+
+        // Name shown to the user and accepted by parse
+        public String label() {
+            return this == TWO_Q ? "2Q" : name();
+        }
+
+        // Parses a policy name such as lru or 2Q, ignoring case
+        public static REPLACE_POLICY parse(String name) {
+            for (REPLACE_POLICY policy : values()) {
+                if (policy.label().equalsIgnoreCase(name) || policy.name().equalsIgnoreCase(name)) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("Unknown replacement policy: " + name);
+        }
 
-    private Map<String, PCB> processes = new HashMap<>();
-    Memory memory = new Memory(memorySize / pageSize);
+        // All labels separated by |, for usage messages
+        public static String labels() {
+            StringBuilder sb = new StringBuilder();
+            for (REPLACE_POLICY policy : values()) {
+                sb.append(sb.length() == 0 ? "" : "|").append(policy.label());
+            }
+            return sb.toString();
+        }
+    };
+    public static REPLACE_POLICY ReplacePolicy = REPLACE_POLICY.LRU;	// Default replacement policy is LRU
 
-    //Constructor for the OS class
+    //LOCAL: a page fault evicts a page of the faulting process, whose resident set keeps its size.
+    //PFF: local replacement, but each resident set is sized by its page fault frequency (see replacePagePff).
+    //GLOBAL: a page fault takes a free frame or evicts any process's page, so resident sets grow and shrink.
+    public static enum REPLACE_SCOPE {
+        LOCAL, PFF, GLOBAL;
+
+        //Reads --scope=local|global from command line arguments, LOCAL if absent
+        public static REPLACE_SCOPE fromArgs(String[] args) {
+            for (String arg : args) {
+                if (arg.startsWith("--scope=")) {
+                    String value = arg.substring("--scope=".length());
+                    for (REPLACE_SCOPE scope : values()) {
+                        if (scope.name().equalsIgnoreCase(value)) {
+                            return scope;
+                        }
+                    }
+                    throw new IllegalArgumentException("Unknown replacement scope: " + value);
+                }
+            }
+            return LOCAL;
+        }
+    };
+
+    //What a new process loads into its resident set before its first access (see PCB.initLoad):
+    //EAGER: its first pages, filling the resident set. DEMAND: nothing, its frames are reserved and filled as it faults.
+    //HYBRID: the pages of segment 0 (usually the code) that fit, the rest of its frames filled on demand.
+    public static enum INIT_LOAD {
+        EAGER, DEMAND, HYBRID;
+
+        //Reads --init-load=eager|demand|hybrid from command line arguments, EAGER if absent
+        public static INIT_LOAD fromArgs(String[] args) {
+            for (String arg : args) {
+                if (arg.startsWith("--init-load=")) {
+                    String value = arg.substring("--init-load=".length());
+                    for (INIT_LOAD mode : values()) {
+                        if (mode.name().equalsIgnoreCase(value)) {
+                            return mode;
+                        }
+                    }
+                    throw new IllegalArgumentException("Unknown initial load: " + value);
+                }
+            }
+            return EAGER;
+        }
+    };
+
+    //READ leaves the page clean; WRITE marks it dirty, so it is written back to swap when it is evicted
+    public static enum ACCESS_TYPE {
+        READ, WRITE
+    };
+    //PFF scope: a process faulting again within this many of its own accesses grows its resident set,
+    //one faulting later first drops the pages it has not referenced since its last fault
+    public static final long DEFAULT_PFF_WINDOW = 100;
+    private long pffWindow = DEFAULT_PFF_WINDOW;
+    private final AtomicInteger trimCursor = new AtomicInteger(); // Handle of the next process to trim when memory is full
+    //Sequential read-ahead: most pages loaded ahead of a sequential fault, 0 to disable (see ReadAhead)
+    private int readAheadMax = 0;
+    private INIT_LOAD initLoad = INIT_LOAD.EAGER;
+    //Told about process and page changes, see OSListener. Shared with every process.
+    private final List<OSListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile TraceRecorder recorder; // Records the requests into a binary trace, null if they are not recorded
+
+    //Whether each process records the pages it accesses, to replay them later with optimal replacement
+    private boolean recordReferences = false;
+    //References of the processes destroyed so far, by process ID in creation order (see getOptTraces)
+    private final Map<String, List<OptTrace>> destroyedTraces = new HashMap<>();
+    //Recorded references by process ID; when set, processes use optimal replacement over them (see OptPolicy)
+    private Map<String, List<OptTrace>> optTraces = null;
+    //Processes created so far under each ID while optTraces is set, i.e. the index of the next one's trace
+    private final Map<String, Integer> optCreated = new HashMap<>();
+    private final REPLACE_SCOPE scope;
+    //GLOBAL scope only: the default replacement policy applied to all frames, slots being frame numbers
+    private final ReplacementPolicy globalPolicy;
+    private final REPLACE_POLICY globalPolicyKind;
+
+    //Thread safety: processes can be created, destroyed and accessed from different threads. Each access holds the
+    //lock of its PCB, so accesses to different processes run in parallel; in GLOBAL scope they also hold globalLock,
+    //since every access updates the shared policy. Creation and destruction hold processLock. Locks are taken in the
+    //order processLock, globalLock, PCB lock; PFF trimming only ever tries another process's lock.
+    private final Map<String, PCB> processes = new ConcurrentHashMap<>();
+    // Processes by handle, the owner number stored in Frame. Handles of destroyed processes are reused.
+    private volatile AtomicReferenceArray<PCB> processTable = new AtomicReferenceArray<>(16);
+    private int nextHandle = 0;
+    private final Deque<Integer> freeHandles = new ArrayDeque<>();
+    private final Object processLock = new Object();
+    private final ReentrantLock globalLock = new ReentrantLock();
+    Memory memory;
+
+    //Constructor for the OS class, using the default 64K machine
     public OS() {
-        PCB.setMemory(memory);
+        this(MemoryConfig.DEFAULT);
+    }
+
+    //Constructor for the OS class with the given memory geometry and local replacement
+    public OS(MemoryConfig config) {
+        this(config, REPLACE_SCOPE.LOCAL);
+    }
+
+    //Constructor for the OS class with the given memory geometry and replacement scope.
+    //In GLOBAL scope, victims are chosen among all frames by the default replacement policy at this point.
+    public OS(MemoryConfig config, REPLACE_SCOPE scope) {
+        this.config = config;
+        this.scope = scope;
+        memory = new Memory(config);
+        globalPolicyKind = ReplacePolicy;
+        globalPolicy = scope == REPLACE_SCOPE.GLOBAL ? ReplacePolicy.create(config.frameCount) : null;
     }
 
     //Judge the legality of the created process; return an error message if not legal, otherwise return null
@@ -29,98 +182,516 @@ public class OS {
         if(processes.containsKey(id)) {
             return "Duplicate process name";
         }
-        if(segments.length == 0 || segments.length > 4) {
-            return "A process can only have 1 to " + OS.maxSegmentNum + "segments";
+        if(segments.length == 0 || segments.length > config.maxSegmentNum) {
+            return "A process can only have 1 to " + config.maxSegmentNum + " segments";
         }
         for(int i = 0; i < segments.length; i++) {
-            if(segments[i] <= 0 || segments[i] > OS.maxSegmentSize) {
-                return "A segment must be less than " + OS.maxSegmentSize + "KB";
+            if(segments[i] <= 0 || segments[i] > config.maxSegmentSize) {
+                return "A segment must be at most " + config.maxSegmentSize + " bytes";
             }
         }
 
         return null;
     }
 
-    //Create a process and return whether the creation was successful
+    //Create a process with the default replacement policy and return whether the creation was successful
     public boolean createProcess(String id, int[] segments) {
+        return createProcess(id, segments, ReplacePolicy);
+    }
+
+    //Create a process with its own replacement policy and return whether the creation was successful
+    public boolean createProcess(String id, int[] segments, REPLACE_POLICY policy) {
+        synchronized(processLock) {
+            if(globalPolicy == null) {
+                return createProcessLocked(id, segments, policy);
+            }
+            globalLock.lock();
+            try {
+                return createProcessLocked(id, segments, policy);
+            } finally {
+                globalLock.unlock();
+            }
+        }
+    }
+
+    private boolean createProcessLocked(String id, int[] segments, REPLACE_POLICY policy) {
         String mess = validate(id, segments);
         if(mess != null) {
-            System.out.println("Failed to create process (" + mess + ")");
+            EventLog.log(EventLog.Level.ERROR, EventLog.Event.PROCESS_CREATE_FAILED, id, mess);
             return false;
         }
 
-        //Ensure if there is enough memory
-        PCB process = new PCB(id, segments, ReplacePolicy);
-        if(process.residentSetCount > memory.unusedFrameCount()) {
-            System.out.println("Failed to create process (insufficient memory)");
+        //Ensure if there is enough memory. Under global replacement the process starts with the free frames there are
+        //and takes the rest from other processes as it faults.
+        int handle = freeHandles.isEmpty() ? nextHandle : freeHandles.peek();
+        PCB process = new PCB(id, handle, segments, policy, createOptPolicy(id, segments), config, memory);
+        if(globalPolicy != null) {
+            process.residentSetCount = Math.min(process.residentSetCount, memory.unusedFrameCount());
+        }
+        //Reserve swap space for every page of the process
+        process.swapBase = memory.allocateSwap(process.pageCount);
+        if(process.swapBase < 0) {
+            EventLog.log(EventLog.Level.ERROR, EventLog.Event.PROCESS_CREATE_FAILED, id, "insufficient swap space");
             return false;
         }
-        //Allocate memory and set the resident set
-        processes.put(id, process);
-        int[] frame = memory.mallocFrame(id, process.residentSetCount);
-        process.residentSet = frame;
+        //Allocate memory and set the resident set (other processes may be taking frames at the same time)
+        int[] frame = memory.mallocFrame(handle, process.residentSetCount);
+        if(frame == null) {
+            memory.freeSwap(process.swapBase, process.pageCount);
+            EventLog.log(EventLog.Level.ERROR, EventLog.Event.PROCESS_CREATE_FAILED, id, "insufficient memory");
+            return false;
+        }
+        if(freeHandles.isEmpty()) {
+            nextHandle++;
+        } else {
+            freeHandles.pop();
+        }
+        process.setResidentSet(frame);
+        if(readAheadMax > 0) {
+            process.readAhead = new ReadAhead(segments.length, readAheadMax);
+        }
+        EventLog.log(EventLog.Level.DEBUG, EventLog.Event.FRAMES_ALLOCATED, id, frame.length, -1, 0);
+
+        //Load the first pages, as many as initLoad says; the other frames stay empty until the process faults
+        process.initLoad(initLoad);
+        if(globalPolicy != null) {
+            for(int frameNum : frame) {
+                Frame f = memory.getFrame(frameNum);
+                if(f.getPageNumber() >= 0) {
+                    globalPolicy.onPreload(frameNum, globalKey(process, f.getSegmentNumber(), f.getPageNumber()));
+                }
+            }
+        }
 
-        //Load some pages randomly
-        process.initLoad();
+        //Tell the recorder and the listeners before any other thread can reach the process, then report its later changes too
+        TraceRecorder r = recorder;
+        if(r != null) {
+            r.processCreated(process);
+        }
+        for(OSListener listener : listeners) {
+            listener.processCreated(process);
+        }
+        process.listeners = listeners;
+
+        //Register the process under its handle, making it visible to other threads
+        AtomicReferenceArray<PCB> table = processTable;
+        if(handle >= table.length()) {
+            AtomicReferenceArray<PCB> grown = new AtomicReferenceArray<>(table.length() * 2);
+            for(int i = 0; i < table.length(); i++) {
+                grown.set(i, table.get(i));
+            }
+            processTable = table = grown;
+        }
+        table.set(handle, process);
+        processes.put(id, process);
+        if(optTraces != null) {
+            optCreated.merge(id, 1, Integer::sum);
+        }
 
-        System.out.println("Process creation successful: " + id);
+        EventLog.log(EventLog.Level.INFO, EventLog.Event.PROCESS_CREATED, id, 0, 0, 0);
         return true;
     }
 
 
-    //Destroy a process
+    //Destroy a process. Accesses to it from other threads that have not started yet fail as if it did not exist.
     public void destroyProcess(String id) {
-        PCB process = processes.get(id);
-        if(process == null) {
-            System.out.println("Operation failed, process " + id + " does not exist");
-            return ;
+        synchronized(processLock) {
+            PCB process = processes.get(id);
+            if(process == null) {
+                EventLog.log(EventLog.Level.ERROR, EventLog.Event.NO_SUCH_PROCESS, id, 0, 0, 0);
+                return ;
+            }
+            if(globalPolicy != null) {
+                globalLock.lock();
+            }
+            process.lock.lock();
+            try {
+                process.alive = false;
+                TraceRecorder r = recorder;
+                if(r != null) {
+                    r.processDestroyed(process);
+                }
+                int[] frames = process.residentFrames();
+                if(globalPolicy != null) {
+                    for(int frameNum : frames) {
+                        if(memory.getFrame(frameNum).getPageNumber() >= 0) {
+                            globalPolicy.onEvict(frameNum);
+                        }
+                    }
+                }
+                memory.getTlb().flushProcess(process.handle);
+                memory.freeFrame(frames);
+                memory.freeSwap(process.swapBase, process.pageCount);
+                processes.remove(id);
+                processTable.set(process.handle, null);
+                if(recordReferences) {
+                    destroyedTraces.computeIfAbsent(id, k -> new ArrayList<>()).add(process.buildOptTrace());
+                }
+                retiredFaultTime.add(process.stats.faultTime.snapshot());
+                retiredStats.addTotals(process.stats);
+                freeHandles.push(process.handle);
+                for(OSListener listener : listeners) {
+                    listener.processDestroyed(process);
+                }
+            } finally {
+                process.lock.unlock();
+                if(globalPolicy != null) {
+                    globalLock.unlock();
+                }
+            }
         }
-
-        int[] frames = process.residentSet;
-        memory.freeFrame(frames);
-        processes.remove(id);
-        System.out.println("Process destruction successful: " + id);
+        EventLog.log(EventLog.Level.INFO, EventLog.Event.PROCESS_DESTROYED, id, 0, 0, 0);
     }
 
 
     //Convert logical address (segment number + segment offset) to physical address. Return -1 if an error occurs.
     //If a page fault occurs, choose a page to replace based on the replacement policy and load the requested page into memory.
 
-    public int toPhysicalAddress(String id, int segmentNum, int segmentOffset) {
+    public long toPhysicalAddress(String id, int segmentNum, int segmentOffset) {
+        return toPhysicalAddress(id, segmentNum, segmentOffset, ACCESS_TYPE.READ);
+    }
+
+    //Same as above for a read or a write. A write marks the page dirty.
+    public long toPhysicalAddress(String id, int segmentNum, int segmentOffset, ACCESS_TYPE type) {
         PCB process = processes.get(id);
         if(process == null) {
-            System.out.println("Operation failed, process " + id + " does not exist");
+            EventLog.log(EventLog.Level.ERROR, EventLog.Event.NO_SUCH_PROCESS, id, 0, 0, 0);
             return -1;
         }
+        return toPhysicalAddress(process, segmentNum, segmentOffset, type);
+    }
+
+    //Same as above for callers that already resolved the PCB (e.g. the trace replayer), skipping the process table lookup.
+    long toPhysicalAddress(PCB process, int segmentNum, int segmentOffset, ACCESS_TYPE type) {
+        String id = process.id;
+        TraceRecorder r = recorder;
+        if (r != null) {
+            r.accessed(process, segmentNum, segmentOffset, type);
+        }
         //Check if the requested segment exists
         if (segmentNum < 0 || segmentNum >= process.STable.length) {
-            System.out.println("Operation failed, segment " + id + " (" + segmentNum + ") does not exist");
+            EventLog.log(EventLog.Level.ERROR, EventLog.Event.NO_SUCH_SEGMENT, id, segmentNum, 0, 0);
             return -1;
         }
 
         SegmentEntry segment = process.STable[segmentNum];
         //If the segment offset is greater than the segment size, the request fails
-        if(segmentOffset > segment.segmentSize) {
-            System.out.println("Operation failed, process " + id + " segment offset (" + segmentOffset +") out of bounds");
+        if(segmentOffset < 0 || segmentOffset >= segment.segmentSize) {
+            EventLog.log(EventLog.Level.ERROR, EventLog.Event.OFFSET_OUT_OF_BOUNDS, id, segmentNum, segmentOffset, 0);
             return -1;
         }
+        TotalRequest.increment();
         //Calculate page number and page offset based on segment offset
-        int pageNum = segmentOffset / OS.pageSize;
-        int pageOffset = segmentOffset % OS.pageSize;
+        int pageNum = segmentOffset >>> config.pageShift;
+        int pageOffset = segmentOffset & config.pageMask;
+
+        // Calculate the physical address
+        int frameNum = translateLocked(process, segmentNum, pageNum, type == ACCESS_TYPE.WRITE);
+        if(frameNum < 0) {
+            EventLog.log(EventLog.Level.ERROR, EventLog.Event.NO_SUCH_PROCESS, id, 0, 0, 0);
+            return -1;
+        }
+        long beginAddress = (long) frameNum << config.pageShift;
+        EventLog.log(EventLog.Level.DEBUG, EventLog.Event.TRANSLATED, id, segmentNum, segmentOffset, beginAddress + pageOffset);
+        return beginAddress + pageOffset;
+    }
 
-        PageEntry page = segment.PTable[pageNum];
-        if(page.load == false) {
-            //If the frame is not in memory, perform a page fault, replace a page based on the replacement policy, and load the page
-            System.out.println("Requested frame is not in memory, page fault occurred");
+    //Runs translatePage holding the locks the replacement scope needs. Returns -1 if the process was destroyed.
+    private int translateLocked(PCB process, int segmentNum, int pageNum, boolean write) {
+        if(globalPolicy != null) {
+            globalLock.lock();
+        }
+        process.lock.lock();
+        try {
+            return process.alive ? translatePage(process, segmentNum, pageNum, write) : -1;
+        } finally {
+            process.lock.unlock();
+            if(globalPolicy != null) {
+                globalLock.unlock();
+            }
+        }
+    }
+
+    //Returns the frame holding the page, asking the TLB first and then the page table.
+    //If the page is not in memory, a page fault occurs: a page is replaced based on the replacement policy and the page is loaded.
+    //The load itself counts as the access, so the policy does not also see it as a hit.
+    //A write sets the page's dirty bit, whether the translation came from the TLB or the page table.
+    //A fault continuing a sequential stream also loads the next pages of the segment, see readAhead.
+    private int translatePage(PCB process, int segmentNum, int pageNum, boolean write) {
+        Tlb tlb = memory.getTlb();
+        int virtualPage = process.virtualPage(segmentNum, pageNum);
+        if(recordReferences) {
+            process.recordReference(virtualPage);
+        }
+        process.stats.count(segmentNum, ProcessStats.Counter.REQUESTS);
+        PageTable table = process.STable[segmentNum].PTable;
+        if(write) {
+            process.stats.count(segmentNum, ProcessStats.Counter.WRITES);
+        }
+        int frameNum = tlb.lookup(process.handle, virtualPage);
+        if(frameNum < 0) {
+            if(!table.isLoaded(pageNum)) {
+                long faultStart = System.nanoTime();
+                EventLog.log(EventLog.Level.DEBUG, EventLog.Event.PAGE_FAULT, process.id, segmentNum, pageNum, 0);
+                if(process.readAhead != null) {
+                    readAhead(process, segmentNum, pageNum);
+                }
+                loadPage(process, segmentNum, pageNum);
+                PageFault.increment();
+                process.stats.count(segmentNum, ProcessStats.Counter.FAULTS);
+                frameNum = table.frameOf(pageNum);
+                tlb.insert(process.handle, virtualPage, frameNum);
+                if(write) {
+                    table.setDirty(pageNum);
+                }
+                process.stats.faultTime.record(System.nanoTime() - faultStart);
+                return frameNum;
+            }
+            frameNum = table.frameOf(pageNum);
+            tlb.insert(process.handle, virtualPage, frameNum);
+        }
+        process.touchPage(segmentNum, pageNum);
+        if(write) {
+            table.setDirty(pageNum);
+        }
+        if(globalPolicy != null) {
+            globalPolicy.onHit(frameNum);
+        }
+        return frameNum;
+    }
+
+    //Loads a page that is not in memory, replacing a page according to the replacement scope. A frame the process
+    //was given empty when it was created (see INIT_LOAD) is filled before anything else.
+    private void loadPage(PCB process, int segmentNum, int pageNum) {
+        if(process.hasEmptyFrame()) {
+            process.replacePage(segmentNum, pageNum);
+            if(globalPolicy != null) {
+                globalPolicy.onLoad(process.STable[segmentNum].PTable.frameOf(pageNum), globalKey(process, segmentNum, pageNum));
+            }
+        } else if(globalPolicy != null) {
+            replacePageGlobal(process, segmentNum, pageNum);
+        } else if(scope == REPLACE_SCOPE.PFF) {
+            replacePagePff(process, segmentNum, pageNum);
+        } else {
             process.replacePage(segmentNum, pageNum);
         }
+    }
 
-        // Calculate the physical address
-        page.usedTime = System.currentTimeMillis();
-        int frameNum = page.frameNum;
-        int beginAddress = memory.getFrame(frameNum).beginAddress;
-        System.out.println("process" + id + "segment(" + segmentNum +") segment offset(" + segmentOffset + ") physical address:" + (beginAddress + pageOffset));
-        return beginAddress + pageOffset;
+    //Read-ahead: if the fault continues a sequential stream of the segment, loads the pages after it that are not in
+    //memory yet. They are loaded before the faulting page so that they cannot replace it, and at most half the
+    //resident set is read ahead so that a stream does not flush the rest of the process's pages.
+    private void readAhead(PCB process, int segmentNum, int pageNum) {
+        PageTable table = process.STable[segmentNum].PTable;
+        int residentSet = scope == REPLACE_SCOPE.LOCAL ? process.residentSetCount
+                : Math.max(process.residentSetCount, config.maxResidentSetNum);
+        int limit = Math.min(table.length() - pageNum - 1, residentSet / 2);
+        int n = process.readAhead.onFault(segmentNum, pageNum, limit);
+        for(int p = pageNum + 1; p <= pageNum + n; p++) {
+            if(!table.isLoaded(p)) {
+                loadPage(process, segmentNum, p);
+                process.markPrefetched(segmentNum, p);
+                EventLog.log(EventLog.Level.DEBUG, EventLog.Event.PAGE_PREFETCHED, process.id, segmentNum, p, 0);
+            }
+        }
+    }
+
+    //Global replacement: loads the page into a free frame if there is one, otherwise into the frame chosen by the
+    //OS-wide policy, taking it from whichever process holds it
+    private void replacePageGlobal(PCB process, int segmentNum, int pageNum) {
+        int key = globalKey(process, segmentNum, pageNum);
+        int[] free = memory.mallocFrame(process.handle, 1);
+        int frameNum;
+        if(free != null) {
+            frameNum = free[0];
+        } else {
+            frameNum = globalPolicy.selectVictim(key);
+            globalPolicy.onEvict(frameNum);
+            Frame frame = memory.getFrame(frameNum);
+            processTable.get(frame.getOwner()).releaseFrame(frameNum);
+            frame.setUsed(process.handle);
+        }
+        process.addFrame(frameNum, segmentNum, pageNum);
+        globalPolicy.onLoad(frameNum, key);
+    }
+
+    //Page fault frequency sizing (Chu and Opderbeck). A fault soon after the previous one means the resident set is
+    //too small, so the page gets a new frame. A fault after a long time means the working set has moved on, so the
+    //pages not referenced since the last fault are released first. Either way the page is added in a free frame if
+    //one is left, trimming idle processes if memory is full; only when that fails does it replace a page locally.
+    //The release keeps one frame: the freed frames may be taken by other threads before this process gets one back,
+    //and it then replaces a page within its resident set.
+    private void replacePagePff(PCB process, int segmentNum, int pageNum) {
+        long now = process.getClock();
+        if(now - process.lastFaultTime > pffWindow) {
+            int released = process.releaseUnreferenced(1);
+            if(released > 0) {
+                EventLog.log(EventLog.Level.DEBUG, EventLog.Event.FRAMES_RELEASED, process.id, released, process.residentSetCount, 0);
+            }
+        }
+        process.lastFaultTime = now;
+        int[] free = memory.mallocFrame(process.handle, 1);
+        if(free == null && trimIdleProcess(process)) {
+            free = memory.mallocFrame(process.handle, 1);
+        }
+        if(free != null) {
+            process.addFrame(free[0], segmentNum, pageNum);
+        } else {
+            process.replacePage(segmentNum, pageNum);
+        }
+    }
+
+    //Frees frames for a growing process by trimming the other processes in turn, each losing the pages it has not
+    //referenced since it was last trimmed. Processes that never fault are never shrunk by replacePagePff, so this is
+    //what gives their frames back. Processes busy in another thread are skipped rather than waited for, so two
+    //growing processes cannot deadlock. Returns whether any frame was freed.
+    private boolean trimIdleProcess(PCB grower) {
+        AtomicReferenceArray<PCB> table = processTable;
+        int n = table.length();
+        int start = trimCursor.get();
+        for(int i = 0; i < n; i++) {
+            int handle = (start + i) % n;
+            PCB process = table.get(handle);
+            if(process == null || process == grower || !process.lock.tryLock()) {
+                continue;
+            }
+            int released = 0;
+            try {
+                if(process.alive && process.residentSetCount > 1) {
+                    released = process.releaseUnreferenced(1);
+                }
+            } finally {
+                process.lock.unlock();
+            }
+            if(released > 0) {
+                EventLog.log(EventLog.Level.DEBUG, EventLog.Event.FRAMES_RELEASED, process.id, released, process.residentSetCount, 0);
+                trimCursor.set((handle + 1) % n);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Records the pages accessed by each process from now on, see getOptTraces
+    public void setRecordReferences(boolean record) {
+        this.recordReferences = record;
+    }
+
+    //The references recorded so far (see setRecordReferences), by process ID: one trace for each process created
+    //under that ID, in creation order, the destroyed ones included
+    public Map<String, List<OptTrace>> getOptTraces() {
+        synchronized(processLock) {
+            Map<String, List<OptTrace>> traces = new HashMap<>();
+            destroyedTraces.forEach((id, list) -> traces.put(id, new ArrayList<>(list)));
+            for(PCB process : processes.values()) {
+                traces.computeIfAbsent(process.id, k -> new ArrayList<>()).add(process.buildOptTrace());
+            }
+            return traces;
+        }
+    }
+
+    //Makes processes created from now on replace pages optimally, knowing their future references from a recorded
+    //run of the same trace (getOptTraces of that run): the n-th process created under an ID gets the n-th trace of
+    //that ID. Only for LOCAL and PFF scope, since global replacement would need the references of all processes in
+    //one sequence.
+    public void setOptTraces(Map<String, List<OptTrace>> traces) {
+        if(scope == REPLACE_SCOPE.GLOBAL) {
+            throw new IllegalStateException("Optimal replacement is only available with local replacement");
+        }
+        this.optTraces = traces;
+    }
+
+    //Optimal replacement policy of a new process, null unless setOptTraces was called
+    private ReplacementPolicy createOptPolicy(String id, int[] segments) {
+        if(optTraces == null) {
+            return null;
+        }
+        List<OptTrace> traces = optTraces.get(id);
+        int created = optCreated.getOrDefault(id, 0);
+        OptTrace trace = traces != null && created < traces.size() ? traces.get(created) : null;
+        if(trace == null) {
+            //Not created in the recorded run
+            int pageCount = 0;
+            for(int size : segments) {
+                pageCount += config.pageCount(size);
+            }
+            trace = OptTrace.build(new int[0], 0, pageCount);
+        }
+        return new OptPolicy(config.maxResidentSetNum, trace);
+    }
+
+    //Sets the page fault frequency window of PFF scope, in accesses of the faulting process
+    public void setPffWindow(long window) {
+        if(window <= 0) {
+            throw new IllegalArgumentException("PFF window must be positive: " + window);
+        }
+        this.pffWindow = window;
+    }
+
+    //Sets the most pages read ahead of a sequential fault for processes created from now on, 0 to disable read-ahead
+    public void setReadAhead(int maxPages) {
+        if(maxPages < 0) {
+            throw new IllegalArgumentException("Read-ahead must not be negative: " + maxPages);
+        }
+        this.readAheadMax = maxPages;
+    }
+
+    //Registers a listener for the process and page changes from now on, see OSListener. Register it before creating
+    //processes to hear about all of them.
+    public void addListener(OSListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OSListener listener) {
+        listeners.remove(listener);
+    }
+
+    //Records the process creations and destructions and the accesses from now on into a binary trace, see
+    //TraceRecorder; null stops recording. Set it before creating processes, or their accesses cannot be replayed.
+    public void setRecorder(TraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    //Sets what processes created from now on load before their first access
+    public void setInitLoad(INIT_LOAD mode) {
+        this.initLoad = mode;
+    }
+
+    public INIT_LOAD getInitLoad() {
+        return initLoad;
+    }
+
+    //Reads --readahead=N from command line arguments, 0 (disabled) if absent
+    public static int readAheadFromArgs(String[] args) {
+        for(String arg : args) {
+            if(arg.startsWith("--readahead=")) {
+                try {
+                    return Integer.parseInt(arg.substring("--readahead=".length()));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Invalid read-ahead: " + arg);
+                }
+            }
+        }
+        return 0;
+    }
+
+    //Reads --pff-window=N from command line arguments, DEFAULT_PFF_WINDOW if absent
+    public static long pffWindowFromArgs(String[] args) {
+        for(String arg : args) {
+            if(arg.startsWith("--pff-window=")) {
+                try {
+                    return Long.parseLong(arg.substring("--pff-window=".length()));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Invalid PFF window: " + arg);
+                }
+            }
+        }
+        return DEFAULT_PFF_WINDOW;
+    }
+
+    //Page key of the global policy: the virtual page mixed with the process handle, so pages of different processes
+    //rarely share a key (a shared key only misleads the ghost lists of 2Q and ARC)
+    private static int globalKey(PCB process, int segmentNum, int pageNum) {
+        return (process.virtualPage(segmentNum, pageNum) ^ (process.handle * 0x9E3779B9)) & Integer.MAX_VALUE;
     }
 
     //Set the page mechanism we use
@@ -130,7 +701,10 @@ public class OS {
 
     //Show the memory
     public void showMemory() {
-        System.out.println(memory.toString());
+        System.out.println(memory.toString(owner -> {
+            PCB process = getProcess(owner);
+            return process == null ? "?" : process.id;
+        }));
         System.out.println();
     }
 
@@ -143,23 +717,28 @@ public class OS {
         }
 
         StringBuilder sb = new StringBuilder();
+        process.lock.lock();
+        try {
+            describeProcess(process, sb);
+        } finally {
+            process.lock.unlock();
+        }
+        System.out.print(sb.toString());
+    }
 
-        int[] frames = process.residentSet;
+    private void describeProcess(PCB process, StringBuilder sb) {
+        String id = process.id;
+        int[] frames = process.residentFrames();
         sb.append("Resident set: [ ");
         for(int elem : frames) {
             sb.append(elem + " ");
         }
         sb.append("]\n");
-        sb.append("Replacement policy: ");
-        if(process.policy == REPLACE_POLICY.FIFO) {
-            sb.append("FIFO ");
-            sb.append("[ ");
-            for(Integer[] something : process.loadQueue) {
-                sb.append("(" + something[0] + ", " + something[1] + ") ");
-            }
-            sb.append("]\n\n");
+        sb.append("Page faults: " + process.stats.total(ProcessStats.Counter.FAULTS) + "\n");
+        if(globalPolicy != null) {
+            sb.append("Replacement policy: " + globalPolicyKind.label() + " (global, across all processes)\n\n");
         } else {
-            sb.append("LRU\n\n");
+            sb.append("Replacement policy: " + process.policy.label() + "\n\n");
         }
 
         for(SegmentEntry segment : process.STable) {
@@ -167,57 +746,130 @@ public class OS {
             sb.append("-----------------------------------------------------------------\n");
             sb.append("| Page Number\t| Load Status\t| Frame Number\t| Frame Start Address\t| Last Access Time\t|\n");
             sb.append("-----------------------------------------------------------------\n");
-            for(PageEntry page : segment.PTable) {
-                sb.append("| " + page.pageNum + "\t\t\t\t");
-                if(page.load) {
-                    sb.append("| load\t\t\t| " + page.frameNum + "\t\t\t\t| " + memory.getFrame(page.frameNum).beginAddress + "\t\t| " + page.usedTime + " |\n");
+            PageTable table = segment.PTable;
+            for(int pageNum = 0; pageNum < table.length(); pageNum++) {
+                sb.append("| " + pageNum + "\t\t\t\t");
+                if(table.isLoaded(pageNum)) {
+                    int frameNum = table.frameOf(pageNum);
+                    sb.append("| load\t\t\t| " + frameNum + "\t\t\t\t| " + memory.getFrame(frameNum).beginAddress + "\t\t| " + table.usedTime(pageNum) + " |\n");
                 } else {
                     sb.append("| unload\t| \t| \t\t| \t\t|\n");
                 }
             }
             sb.append("-----------------------------------------------------------------\n\n");
         }
-
-        System.out.print(sb.toString());
     }
 
     public void pageReplace(String id, int segmentNum, int pageNum) {
-        TotalRequest.incrementAndGet(); // Increment on every request
+        pageReplace(id, segmentNum, pageNum, ACCESS_TYPE.READ);
+    }
+
+    //Same as above for a read or a write of the page. A write marks the page dirty.
+    public void pageReplace(String id, int segmentNum, int pageNum, ACCESS_TYPE type) {
+        TotalRequest.increment(); // Increment on every request
 
         try {
             PCB process = processes.get(id);
+            if (process == null) {
+                EventLog.log(EventLog.Level.ERROR, EventLog.Event.NO_SUCH_PROCESS, id, 0, 0, 0);
+                return;
+            }
+            TraceRecorder r = recorder;
+            if (r != null) {
+                r.accessed(process, segmentNum, pageNum << config.pageShift, type); // The first byte of the page
+            }
 
-            if (segmentNum >= process.STable.length) {
-                System.out.println("Segment " + segmentNum + " is not in the process");
+            if (segmentNum < 0 || segmentNum >= process.STable.length) {
+                EventLog.log(EventLog.Level.ERROR, EventLog.Event.NO_SUCH_SEGMENT, id, segmentNum, 0, 0);
                 return;
             }
 
-            if (pageNum >= process.STable[segmentNum].PTable.length) {
-                System.out.println("Page " + pageNum + " is not in segment " + segmentNum);
+            if (pageNum < 0 || pageNum >= process.STable[segmentNum].PTable.length()) {
+                EventLog.log(EventLog.Level.ERROR, EventLog.Event.NO_SUCH_PAGE, id, segmentNum, pageNum, 0);
                 return;
             }
 
-            if (!process.STable[segmentNum].PTable[pageNum].load) {
-                process.replacePage(segmentNum, pageNum);
-                PageFault.incrementAndGet();
-            } else {
-                process.STable[segmentNum].PTable[pageNum].setUsedTime(); // Update used time
+            if(translateLocked(process, segmentNum, pageNum, type == ACCESS_TYPE.WRITE) < 0) {
+                EventLog.log(EventLog.Level.ERROR, EventLog.Event.NO_SUCH_PROCESS, id, 0, 0, 0);
+                return;
             }
         } catch (Exception e) {
-            System.out.println("An error occurred: " + e.getMessage());
-            e.printStackTrace(); // For debugging
+            EventLog.log(EventLog.Level.ERROR, EventLog.Event.MESSAGE, id, "An error occurred: " + e);
+        }
+        EventLog.log(EventLog.Level.DEBUG, EventLog.Event.REQUEST_COUNTS, null, TotalRequest.sum(), PageFault.sum(), 0);
+    }
+
+    public long getTotalRequest() {
+        return TotalRequest.sum();
+    }
+
+    public long getPageFault() {
+        return PageFault.sum();
+    }
+
+    /**
+     * Takes a snapshot of the request, fault and fault service time statistics of this OS and of each process,
+     * without stopping processes running in other threads. Counters updated meanwhile may be slightly behind.
+     */
+    public StatsSnapshot getStats() {
+        List<ProcessStats.Snapshot> snapshots = new ArrayList<>();
+        LatencyHistogram.Snapshot faultTime;
+        ProcessStats.Snapshot retired;
+        synchronized(processLock) {
+            faultTime = retiredFaultTime.snapshot();
+            retired = retiredStats.snapshot(null);
+            for(PCB process : processes.values()) {
+                ProcessStats.Snapshot snapshot = process.stats.snapshot(process.id);
+                snapshots.add(snapshot);
+                faultTime = faultTime.plus(snapshot.faultTime);
+            }
         }
-        System.out.println("Total Requests: " + TotalRequest.get()); // Print Total Requests
-        System.out.println("Page Faults: " + PageFault.get()); // Print Page Faults
+        snapshots.sort((a, b) -> a.id.compareTo(b.id));
+        return new StatsSnapshot(TotalRequest.sum(), PageFault.sum(), faultTime, retired, snapshots);
     }
 
-    public int getTotalRequest() {
-        return TotalRequest.get();
+    //Fraction of translations answered by the TLB without reading the page table
+    public double getTlbHitRatio() {
+        return memory.getTlb().getHitRatio();
+    }
+
+    public Tlb getTlb() {
+        return memory.getTlb();
+    }
+    public REPLACE_SCOPE getScope() {
+        return scope;
     }
 
-    public int getPageFault() {
-        return PageFault.get();
+    //Replacement policy choosing victims: the OS-wide one in GLOBAL scope, otherwise the process's own
+    public REPLACE_POLICY getPolicy(PCB process) {
+        return scope == REPLACE_SCOPE.GLOBAL ? globalPolicyKind : process.policy;
     }
+
+    public MemoryConfig getConfig() {
+        return config;
+    }
+
+    //The swap file pages are read from and written to, null if page I/O is only logged (see MemoryConfig.swapFile)
+    public SwapFile getSwap() {
+        return memory.getSwap();
+    }
+
+    //The queue of page-outs waiting to be written to the swap file, null if they are written at once
+    public PageOutQueue getPageOutQueue() {
+        return memory.getPageOutQueue();
+    }
+
+    //Closes and deletes the swap file, if any. The OS cannot page in or out afterwards.
+    public void close() {
+        memory.close();
+    }
+
+    //Returns the process with the given handle (e.g. Frame.getOwner()), or null if there is none
+    public PCB getProcess(int handle) {
+        AtomicReferenceArray<PCB> table = processTable;
+        return handle >= 0 && handle < table.length() ? table.get(handle) : null;
+    }
+
     public Map<String, PCB> getProcesses(){
         return processes;
     }
@@ -0,0 +1,42 @@
+/**
+ * Receives the changes an OS makes to its processes and their pages, see OS.addListener. Views can patch only what
+ * changed instead of rescanning every page table.
+ *
+ * Methods are called on the thread making the change, while it holds the process's lock, so a listener sees the
+ * changes of one process in order. They must return quickly and must not call back into the OS; a GUI should record
+ * the change and apply it on its own thread.
+ */
+public interface OSListener {
+
+    /**
+     * A process was created and its first pages loaded (see OS.INIT_LOAD). Called before any access to it,
+     * so its page tables and resident set can be read.
+     */
+    default void processCreated(PCB process) {
+    }
+
+    /**
+     * A process was destroyed. Its frames (PCB.residentFrames) are free again.
+     */
+    default void processDestroyed(PCB process) {
+    }
+
+    /**
+     * A page was loaded into a frame of the process, on a page fault or by read-ahead.
+     */
+    default void pageLoaded(PCB process, int segmentNum, int pageNum, int frameNum) {
+    }
+
+    /**
+     * A page was evicted from the frame, which the process keeps for another page, gives to another process, or frees.
+     */
+    default void pageEvicted(PCB process, int segmentNum, int pageNum, int frameNum) {
+    }
+
+    /**
+     * An empty frame of the process, reserved but never filled, left its resident set and is free again, when PFF
+     * trimming shrank the resident set. Frames released with a page in them are reported by pageEvicted.
+     */
+    default void frameReleased(PCB process, int frameNum) {
+    }
+}
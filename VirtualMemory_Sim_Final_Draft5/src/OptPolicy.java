@@ -0,0 +1,125 @@
+import java.util.Arrays;
+
+/**
+ * Belady's optimal replacement: evicts the resident page whose next reference is furthest in the future.
+ * It needs the whole future reference string, so it can only replay a recorded trace (see OptTrace), where it gives
+ * the lower bound on page faults for a resident set of the same size.
+ *
+ * Every access is one onHit, or one onLoad if it faulted, so the policy follows its position in the trace by
+ * counting them. The resident slots sit in a max-heap keyed by the position of their next reference, so selecting a
+ * victim is O(1) and each access costs O(log n).
+ */
+public class OptPolicy implements ReplacementPolicy {
+    private final OptTrace trace;
+    private int position = 0; // Position in the trace of the next access
+
+    private int[] heap = new int[0]; // Slots, the one referenced last at the root
+    private int heapSize = 0;
+    private int[] heapIndex = new int[0]; // Position of each slot in heap, -1 if the slot is not resident
+    private int[] nextUse = new int[0]; // Position of the next reference to the page in each slot
+
+    public OptPolicy(int capacity, OptTrace trace) {
+        this.trace = trace;
+        grow(capacity);
+    }
+
+    @Override
+    public void onPreload(int slot, int pageKey) {
+        insert(slot, trace.firstUse(pageKey));
+    }
+
+    @Override
+    public void onLoad(int slot, int pageKey) {
+        insert(slot, advance(pageKey));
+    }
+
+    @Override
+    public void onHit(int slot) {
+        nextUse[slot] = advance(-1);
+        siftDown(siftUp(heapIndex[slot]));
+    }
+
+    @Override
+    public void onEvict(int slot) {
+        int i = heapIndex[slot];
+        if (i < 0) {
+            return;
+        }
+        heapIndex[slot] = -1;
+        int last = heap[--heapSize];
+        if (i < heapSize) {
+            place(last, i);
+            siftDown(siftUp(i));
+        }
+    }
+
+    @Override
+    public int selectVictim(int incomingKey) {
+        return heapSize == 0 ? -1 : heap[0];
+    }
+
+    // Consumes the access at the current position and returns where the same page is referenced next
+    private int advance(int pageKey) {
+        if (position >= trace.length() || (pageKey >= 0 && trace.pageAt(position) != pageKey)) {
+            throw new IllegalStateException("Access " + position + " does not follow the recorded trace");
+        }
+        return trace.nextUse(position++);
+    }
+
+    private void insert(int slot, int next) {
+        if (slot >= heapIndex.length) {
+            grow(slot + 1);
+        }
+        nextUse[slot] = next;
+        place(slot, heapSize++);
+        siftUp(heapSize - 1);
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, heapIndex.length * 2);
+        int oldLength = heapIndex.length;
+        heap = Arrays.copyOf(heap, capacity);
+        heapIndex = Arrays.copyOf(heapIndex, capacity);
+        nextUse = Arrays.copyOf(nextUse, capacity);
+        Arrays.fill(heapIndex, oldLength, capacity, -1);
+    }
+
+    private void place(int slot, int i) {
+        heap[i] = slot;
+        heapIndex[slot] = i;
+    }
+
+    // Moves the entry at i towards the root while its next use is later than its parent's, returns its new index
+    private int siftUp(int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (nextUse[heap[parent]] >= nextUse[slot]) {
+                break;
+            }
+            place(heap[parent], i);
+            i = parent;
+        }
+        place(slot, i);
+        return i;
+    }
+
+    private void siftDown(int i) {
+        int slot = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && nextUse[heap[child + 1]] > nextUse[heap[child]]) {
+                child++;
+            }
+            if (nextUse[heap[child]] <= nextUse[slot]) {
+                break;
+            }
+            place(heap[child], i);
+            i = child;
+        }
+        place(slot, i);
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.Arrays;
+
+/**
+ * The recorded page references of one process, indexed for Belady's optimal replacement (see OptPolicy).
+ * One backward pass over the references gives, for every reference, the position of the next reference to the
+ * same page, and for every page its first reference. A replacement decision then needs no scan of the future.
+ */
+public class OptTrace {
+    public static final int NEVER = Integer.MAX_VALUE; // Position of a reference that never comes
+
+    private final int[] pages;    // Virtual page of each reference
+    private final int[] nextUse;  // Position of the next reference to the same page, NEVER if none
+    private final int[] firstUse; // Position of the first reference to each virtual page, NEVER if none
+
+    private OptTrace(int[] pages, int[] nextUse, int[] firstUse) {
+        this.pages = pages;
+        this.nextUse = nextUse;
+        this.firstUse = firstUse;
+    }
+
+    /**
+     * Indexes a reference string.
+     *
+     * @param pages Virtual pages referenced, in order (see PCB.virtualPage).
+     * @param count Number of references in pages.
+     * @param pageCount Number of virtual pages of the process.
+     */
+    public static OptTrace build(int[] pages, int count, int pageCount) {
+        int[] nextUse = new int[count];
+        int[] lastSeen = new int[pageCount]; // During the pass: the nearest later reference to each page
+        Arrays.fill(lastSeen, NEVER);
+        for (int i = count - 1; i >= 0; i--) {
+            nextUse[i] = lastSeen[pages[i]];
+            lastSeen[pages[i]] = i;
+        }
+        // After the pass the nearest later reference is the first one
+        return new OptTrace(Arrays.copyOf(pages, count), nextUse, lastSeen);
+    }
+
+    public int length() {
+        return pages.length;
+    }
+
+    public int pageAt(int position) {
+        return pages[position];
+    }
+
+    // Position of the next reference to the page referenced at position, NEVER if there is none
+    public int nextUse(int position) {
+        return nextUse[position];
+    }
+
+    // Position of the first reference to the virtual page, NEVER if there is none
+    public int firstUse(int virtualPage) {
+        return firstUse[virtualPage];
+    }
+}
@@ -1,55 +1,124 @@
-import java.util.Queue;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Process Control Block (PCB) representing a process in the operating system.
  */
 public class PCB {
 
-    private static Memory memory = null; // Static reference to the Memory object
+    private final Memory memory; // Memory holding the resident set of this process
 
     public String id; // Process ID
+    public final int handle; // Small integer identifying the process in Frame.owner, see OS.getProcess(int)
         public SegmentEntry[] STable; // Segment Table
-    public int residentSetCount; // Number of pages in the resident set
-    public int[] residentSet; // Frame numbers of the pages in the resident set
+    public int pageCount; // Number of pages of all segments
+    public int residentSetCount; // Number of frames in the resident set
+    public int[] residentSet; // Frame number held by each resident set slot, -1 if the slot is empty
     public OS.REPLACE_POLICY policy; // Page replacement policy for this process
+    public final ProcessStats stats; // Requests, faults, evictions and write-backs per segment, fault service times
+    public int swapBase = 0; // First swap slot of the process, see swapSlot and Memory.allocateSwap
+    public ReadAhead readAhead = null; // Sequential read-ahead state, null if the OS does not read ahead
+    // Told about every page loaded and evicted once the process is created (see OS.addListener)
+    List<OSListener> listeners = Collections.emptyList();
+    public long lastFaultTime = 0; // Logical clock at the last page fault, for page fault frequency sizing
 
-    // Queue to track the order of page loads into memory, used for FIFO replacement policy.
-    // The Integer array elements represent segment number and page number respectively.
-    public Queue<Integer[]> loadQueue = new LinkedList<>();
+    // Guards the page tables, resident set and replacement policy: the OS holds it for every access to the process,
+    // so different processes can be driven from different threads
+    final ReentrantLock lock = new ReentrantLock();
+    // Cleared under lock when the process is destroyed; accesses that were waiting for the lock then fail
+    volatile boolean alive = true;
+
+    // Chooses victims among the resident set slots, created from policy
+    private final ReplacementPolicy replacementPolicy;
+    // Segment and page number held by each resident set slot, -1 if the slot is empty.
+    private int[] slotSegment;
+    private int[] slotPage;
+    // Number of slots in use or emptied; slots from here to residentSet.length have never been used
+    private int slotCount = 0;
+    // Slots from here to slotCount that have a frame but no page: frames reserved at creation and not yet filled,
+    // see initLoad. replacePage fills them in order before it evicts anything.
+    private int emptySlot = 0;
+    private int emptyFrameCount = 0;
+    // Slots emptied by releaseFrame, reused by addFrame before new slots are added
+    private int[] freeSlots = new int[0];
+    private int freeSlotCount = 0;
+    // Virtual pages of the accesses so far, only if the OS records references
+    private int[] references = new int[0];
+    private int referenceCount = 0;
+    // Logical clock of this process, advanced on every access. Stored as the page's used time in its PageTable.
+    private long clock = 0;
 
     /**
      * Constructor for PCB.
      *
      * @param id The process ID.
+     * @param handle The process handle recorded as owner of its frames.
      * @param segments An array representing the size of each segment.
      * @param policy The page replacement policy.
+     * @param config The memory geometry (page size and resident set limit).
+     * @param memory The memory the resident set is allocated from.
      */
-    public PCB(String id, int[] segments, OS.REPLACE_POLICY policy) {
+    public PCB(String id, int handle, int[] segments, OS.REPLACE_POLICY policy, MemoryConfig config, Memory memory) {
+        this(id, handle, segments, policy, null, config, memory);
+    }
+
+    /**
+     * Constructor for PCB with a replacement policy not created from OS.REPLACE_POLICY, such as OptPolicy.
+     *
+     * @param replacementPolicy The policy choosing victims, or null to create it from policy.
+     */
+    public PCB(String id, int handle, int[] segments, OS.REPLACE_POLICY policy, ReplacementPolicy replacementPolicy,
+               MemoryConfig config, Memory memory) {
         this.id = id;
+        this.handle = handle;
         this.policy = policy;
+        this.memory = memory;
         STable = new SegmentEntry[segments.length];
+        pageCount = 0;
         for (int i = 0; i < STable.length; i++) {
-            STable[i] = new SegmentEntry(i, segments[i]);
+            STable[i] = new SegmentEntry(i, segments[i], pageCount, config);
+            pageCount += STable[i].PTable.length();
         }
+        stats = new ProcessStats(segments.length);
 
-        // Calculate the size of the resident set
-        residentSetCount = 0;
-        for (SegmentEntry segment : STable) {
-            residentSetCount += segment.PTable.length;
-        }
-        if (residentSetCount > OS.maxResidentSetNum) {
-            residentSetCount = OS.maxResidentSetNum;
+        // Calculate the initial size of the resident set, see setResidentSet
+        residentSetCount = pageCount;
+        if (residentSetCount > config.maxResidentSetNum) {
+            residentSetCount = config.maxResidentSetNum;
         }
+
+        this.replacementPolicy = replacementPolicy != null ? replacementPolicy : policy.create(residentSetCount);
+        residentSet = new int[0];
+        slotSegment = new int[0];
+        slotPage = new int[0];
     }
 
     /**
-     * Sets the Memory object for the PCB class. This needs to be called only once before using PCB class methods.
+     * Gives the process its initial frames, one resident set slot each. Called once before initLoad.
      *
-     * @param m The Memory object to set.
+     * @param frames The frames allocated to the process.
      */
-    public static void setMemory(Memory m) {
-        memory = m;
+    public void setResidentSet(int[] frames) {
+        growSlots(frames.length);
+        System.arraycopy(frames, 0, residentSet, 0, frames.length);
+        residentSetCount = frames.length;
+        slotCount = frames.length;
+    }
+
+    /**
+     * Returns the frames currently in the resident set.
+     */
+    public int[] residentFrames() {
+        int[] frames = new int[residentSetCount];
+        int n = 0;
+        for (int frameNum : residentSet) {
+            if (frameNum >= 0) {
+                frames[n++] = frameNum;
+            }
+        }
+        return frames;
     }
 
     /**
@@ -57,51 +126,97 @@ public class PCB {
      * Initial loading strategy: Load pages from the 0th, 1st, etc., segments until the resident set is fully loaded.
      */
     public void initLoad() {
+        initLoad(OS.INIT_LOAD.EAGER);
+    }
+
+    /**
+     * After creating the process, loads its first pages as the mode says: EAGER fills the resident set from segment 0
+     * on, HYBRID loads only segment 0, DEMAND loads nothing. The frames left over stay empty until page faults fill them.
+     */
+    public void initLoad(OS.INIT_LOAD mode) {
         int index = 0;
-        for (SegmentEntry segment : STable) {
-            for (PageEntry page : segment.PTable) {
+        int segments = mode == OS.INIT_LOAD.EAGER ? STable.length : mode == OS.INIT_LOAD.HYBRID ? 1 : 0;
+        for (int seg = 0; seg < segments; seg++) {
+            SegmentEntry segment = STable[seg];
+            for (int pageNum = 0; pageNum < segment.PTable.length(); pageNum++) {
                 if (index >= residentSetCount) {
                     break;
                 }
-                page.setLoad(residentSet[index]);
-                loadQueue.add(new Integer[]{segment.segmentNum, page.pageNum});
-                memory.readPage(id, segment.segmentNum, page.pageNum, residentSet[index]);
+                loadIntoSlot(index, segment.segmentNum, pageNum);
+                replacementPolicy.onPreload(index, virtualPage(segment.segmentNum, pageNum));
+                pageIn(segment.segmentNum, pageNum, residentSet[index]);
                 index++;
             }
         }
+        emptySlot = index;
+        emptyFrameCount = residentSetCount - index;
+    }
+
+    // Whether the resident set has a frame without a page, see initLoad
+    public boolean hasEmptyFrame() {
+        return emptyFrameCount > 0;
     }
 
     /**
-     * Selects a page to replace based on the FIFO policy, returns the segment and page numbers.
-     *
-     * @return An array containing the segment and page numbers of the selected page.
+     * Returns the process-wide number of a page: pages are numbered consecutively through segment 0, segment 1, etc.
      */
-    private Integer[] selectReplacePage_FIFO() {
-        return loadQueue.poll();
+    public int virtualPage(int segmentNum, int pageNum) {
+        return STable[segmentNum].firstPage + pageNum;
     }
 
     /**
-     * Selects a page to replace based on the LRU policy, returns the segment and page numbers.
+     * Returns the number of the segment holding a process-wide page, the inverse of virtualPage. Processes have few
+     * segments, so they are searched from the last one.
+     */
+    public int segmentOf(int virtualPage) {
+        int s = STable.length - 1;
+        while (STable[s].firstPage > virtualPage || STable[s].PTable.length() == 0) {
+            s--;
+        }
+        return s;
+    }
+
+    /**
+     * Returns the swap slot holding the page when it is not in memory: the process's slots follow its virtual pages.
+     */
+    public int swapSlot(int segmentNum, int pageNum) {
+        return swapBase + virtualPage(segmentNum, pageNum);
+    }
+
+    /**
+     * Records an access to a resident page: advances the logical clock and tells the replacement policy.
      *
-     * @return An array containing the segment and page numbers of the selected page.
-     */
-    private Integer[] selectReplacePage_LRU() {
-        long leastTime = System.currentTimeMillis() + 1000000; // Set to a future time
-        int segmentNum = -1;
-        int pageNum = -1;
-
-        // Iterate through all pages to find the one with the smallest usedTime
-        for (SegmentEntry segment : STable) {
-            for (PageEntry page : segment.PTable) {
-                if (page.load && page.usedTime < leastTime) {
-                    leastTime = page.usedTime;
-                    segmentNum = segment.segmentNum;
-                    pageNum = page.pageNum;
-                }
-            }
+     * @param segmentNum Segment number of the accessed page.
+     * @param pageNum Page number of the accessed page.
+     */
+    public void touchPage(int segmentNum, int pageNum) {
+        PageTable table = STable[segmentNum].PTable;
+        if (table.isPrefetched(pageNum)) {
+            table.clearPrefetched(pageNum);
+            stats.count(segmentNum, ProcessStats.Counter.PREFETCH_HITS);
+            readAhead.onUsed(segmentNum);
         }
+        table.setUsedTime(pageNum, ++clock);
+        replacementPolicy.onHit(table.slotOf(pageNum));
+    }
+
+    /**
+     * Marks a page just loaded by read-ahead rather than by an access to it, see ReadAhead.
+     */
+    public void markPrefetched(int segmentNum, int pageNum) {
+        STable[segmentNum].PTable.setPrefetched(pageNum);
+        stats.count(segmentNum, ProcessStats.Counter.PREFETCHES);
+    }
 
-        return new Integer[]{segmentNum, pageNum};
+    // Maps the page into the given resident set slot
+    private void loadIntoSlot(int slot, int segmentNum, int pageNum) {
+        STable[segmentNum].PTable.setLoad(pageNum, residentSet[slot], slot, ++clock);
+        memory.getFrame(residentSet[slot]).setPage(segmentNum, pageNum);
+        slotSegment[slot] = segmentNum;
+        slotPage[slot] = pageNum;
+        for (OSListener listener : listeners) {
+            listener.pageLoaded(this, segmentNum, pageNum, residentSet[slot]);
+        }
     }
 
     /**
@@ -111,24 +226,186 @@ public class PCB {
      * @param inPN Page number of the page to load.
      */
     public void replacePage(int inSN, int inPN) {
-        Integer[] something;
-        if (policy == OS.REPLACE_POLICY.FIFO) {
-            something = selectReplacePage_FIFO();
+        int slot;
+        if (emptyFrameCount > 0) {
+            slot = nextEmptySlot();
+            emptyFrameCount--;
+        } else {
+            slot = replacementPolicy.selectVictim(virtualPage(inSN, inPN));
+            replacementPolicy.onEvict(slot);
+            evictSlot(slot);
+        }
+        pageIn(inSN, inPN, residentSet[slot]);
+        loadIntoSlot(slot, inSN, inPN);
+        replacementPolicy.onLoad(slot, virtualPage(inSN, inPN));
+    }
+
+    /**
+     * Grows the resident set by one frame and loads the page into it, without evicting anything.
+     *
+     * @param frameNum A frame already owned by this process (see Memory.mallocFrame) and not in its resident set.
+     * @param inSN Segment number of the page to load.
+     * @param inPN Page number of the page to load.
+     */
+    public void addFrame(int frameNum, int inSN, int inPN) {
+        int slot;
+        if (freeSlotCount > 0) {
+            slot = freeSlots[--freeSlotCount];
+        } else {
+            slot = slotCount++;
+            growSlots(slotCount);
+        }
+        residentSet[slot] = frameNum;
+        residentSetCount++;
+        pageIn(inSN, inPN, frameNum);
+        loadIntoSlot(slot, inSN, inPN);
+        replacementPolicy.onLoad(slot, virtualPage(inSN, inPN));
+    }
+
+    /**
+     * Evicts the page held in the frame and shrinks the resident set by that frame. The frame stays owned by this
+     * process in Memory; the caller frees it or hands it to another process.
+     *
+     * @param frameNum A frame of the resident set.
+     */
+    public void releaseFrame(int frameNum) {
+        Frame frame = memory.getFrame(frameNum);
+        int slot = STable[frame.getSegmentNumber()].PTable.slotOf(frame.getPageNumber());
+        replacementPolicy.onEvict(slot);
+        evictSlot(slot);
+        residentSet[slot] = -1;
+        residentSetCount--;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(4, freeSlots.length * 2));
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    /**
+     * Working set trimming: evicts the resident pages not referenced since the last trim and frees their frames,
+     * and clears the referenced bit of the others so the next trim can tell which ones are still used.
+     *
+     * @param keep Minimum number of frames to leave in the resident set.
+     * @return The number of frames freed.
+     */
+    public int releaseUnreferenced(int keep) {
+        int[] released = new int[residentSetCount];
+        int n = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int frameNum = residentSet[slot];
+            if (frameNum < 0) {
+                continue;
+            }
+            if (slotPage[slot] < 0) {
+                // A frame never filled is the least referenced of all
+                if (residentSetCount > keep) {
+                    releaseEmptyFrame(slot);
+                    released[n++] = frameNum;
+                }
+                continue;
+            }
+            PageTable table = STable[slotSegment[slot]].PTable;
+            int pageNum = slotPage[slot];
+            if (table.isReferenced(pageNum)) {
+                table.clearReferenced(pageNum);
+            } else if (residentSetCount > keep) {
+                releaseFrame(frameNum);
+                released[n++] = frameNum;
+            }
+        }
+        if (n > 0) {
+            memory.freeFrame(Arrays.copyOf(released, n));
+        }
+        return n;
+    }
+
+    // Takes the frame of an empty slot out of the resident set, like releaseFrame without the eviction
+    private void releaseEmptyFrame(int slot) {
+        for (OSListener listener : listeners) {
+            listener.frameReleased(this, residentSet[slot]);
+        }
+        residentSet[slot] = -1;
+        residentSetCount--;
+        emptyFrameCount--;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(4, freeSlots.length * 2));
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    // The first slot from emptySlot on that still has a frame but no page
+    private int nextEmptySlot() {
+        while (residentSet[emptySlot] < 0 || slotPage[emptySlot] >= 0) {
+            emptySlot++;
+        }
+        return emptySlot++;
+    }
+
+    // Logical clock of this process: the number of accesses and loads so far
+    public long getClock() {
+        return clock;
+    }
+
+    // Appends the virtual page of an access to the recorded references, see OS.setRecordReferences
+    public void recordReference(int virtualPage) {
+        if (referenceCount == references.length) {
+            references = Arrays.copyOf(references, Math.max(1024, references.length * 2));
+        }
+        references[referenceCount++] = virtualPage;
+    }
+
+    // The recorded references indexed for optimal replacement
+    public OptTrace buildOptTrace() {
+        return OptTrace.build(references, referenceCount, pageCount);
+    }
+
+    // Writes the page in the slot out if it is dirty and unmaps it, leaving the slot's frame empty
+    private void evictSlot(int slot) {
+        int outSN = slotSegment[slot];
+        int outPN = slotPage[slot];
+        int frameNum = residentSet[slot];
+        PageTable table = STable[outSN].PTable;
+        if (table.isPrefetched(outPN)) {
+            readAhead.onWasted(outSN);
+        }
+        if (table.isDirty(outPN)) {
+            memory.writePage(id, outSN, outPN, swapSlot(outSN, outPN), frameNum);
+            table.setSwapped(outPN);
+            stats.count(outSN, ProcessStats.Counter.DIRTY_EVICTIONS);
         } else {
-            something = selectReplacePage_LRU();
+            // The copy in swap (or the zero page) is still current
+            EventLog.log(EventLog.Level.DEBUG, EventLog.Event.PAGE_DROPPED, id, outSN, outPN, frameNum);
+            stats.count(outSN, ProcessStats.Counter.CLEAN_EVICTIONS);
+        }
+        table.setUnload(outPN);
+        memory.getTlb().invalidate(handle, virtualPage(outSN, outPN));
+        memory.getFrame(frameNum).setPage(-1, -1);
+        slotSegment[slot] = -1;
+        slotPage[slot] = -1;
+        for (OSListener listener : listeners) {
+            listener.pageEvicted(this, outSN, outPN, frameNum);
         }
+    }
 
-        int outSN = something[0];
-        int outPN = something[1];
+    // Reads the page into the frame from swap, or gets a zero-filled frame if the page has never been written out
+    private void pageIn(int segmentNum, int pageNum, int frameNum) {
+        int swapSlot = STable[segmentNum].PTable.isSwapped(pageNum) ? swapSlot(segmentNum, pageNum) : -1;
+        memory.readPage(id, segmentNum, pageNum, swapSlot, frameNum);
+    }
 
-        PageEntry inPage = STable[inSN].PTable[inPN];
-        PageEntry outPage = STable[outSN].PTable[outPN];
-        int frameNum = outPage.frameNum;
-        memory.writePage(id, outSN, outPN, frameNum);
-        outPage.setUnload();
-        memory.readPage(id, inSN, inPN, frameNum);
-        inPage.setLoad(frameNum);
-        loadQueue.add(new Integer[]{inSN, inPN});
+    // Makes room for at least the given number of slots, new slots are empty
+    private void growSlots(int slots) {
+        int oldLength = residentSet.length;
+        if (slots <= oldLength) {
+            return;
+        }
+        int length = Math.max(slots, oldLength * 2);
+        residentSet = Arrays.copyOf(residentSet, length);
+        slotSegment = Arrays.copyOf(slotSegment, length);
+        slotPage = Arrays.copyOf(slotPage, length);
+        Arrays.fill(residentSet, oldLength, length, -1);
+        Arrays.fill(slotSegment, oldLength, length, -1);
+        Arrays.fill(slotPage, oldLength, length, -1);
     }
 }
 
@@ -138,72 +415,23 @@ public class PCB {
 class SegmentEntry {
     public int segmentNum; // Segment number
     public int segmentSize; // Segment size
-    public PageEntry[] PTable; // Corresponding page table
+    public int firstPage; // Process-wide number of the first page of this segment, see PCB.virtualPage
+    public PageTable PTable; // Corresponding page table
 
     /**
      * Constructor for SegmentEntry.
      *
      * @param segmentNum The segment number.
      * @param segmentSize The size of the segment.
+     * @param firstPage The process-wide number of the first page of this segment.
+     * @param config The memory geometry, giving the page size.
      */
-    public SegmentEntry(int segmentNum, int segmentSize) {
+    public SegmentEntry(int segmentNum, int segmentSize, int firstPage, MemoryConfig config) {
         this.segmentNum = segmentNum;
         this.segmentSize = segmentSize;
+        this.firstPage = firstPage;
 
         // Calculate the size of the page table
-        int count = segmentSize / OS.pageSize;
-        if (segmentSize % OS.pageSize != 0) {
-            count++;
-        }
-        PTable = new PageEntry[count];
-        for (int i = 0; i < count; i++) {
-            PTable[i] = new PageEntry(i);
-        }
-    }
-}
-
-/**
- * Page Table Entry representing a page in a segment.
- */
-class PageEntry {
-    public int pageNum; // Page number
-    public boolean load; // Whether this page is loaded into memory
-    public int frameNum; // Frame number where the page is loaded. Irrelevant if load is false.
-    // The last time this page was accessed. Used for LRU page replacement strategy. Irrelevant if load is false.
-    public long usedTime;
-    public String info; // Additional information, such as protection, sharing settings, etc.
-
-    /**
-     * Constructor for PageEntry. Creates an unloaded page with a specified page number.
-     *
-     * @param pageNum The page number.
-     */
-    public PageEntry(int pageNum) {
-        this.pageNum = pageNum;
-        setUnload();
-    }
-
-    /**
-     * Sets the page as loaded into the frame with number frameNum.
-     *
-     * @param frameNum The frame number where the page is loaded.
-     */
-    public void setLoad(int frameNum) {
-        this.load = true;
-        this.frameNum = frameNum;
-        usedTime = System.currentTimeMillis(); // Update the last used time
-    }
-
-    /**
-     * Unloads the page from memory.
-     */
-    public void setUnload() {
-        this.load = false;
-        this.frameNum = -1;
-        usedTime = -1; // Reset the last used time
-    }
-
-    public void setUsedTime(){
-        usedTime = System.currentTimeMillis(); // Update the last used time
+        PTable = new PageTable(config.pageCount(segmentSize));
     }
 }
@@ -0,0 +1,178 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind stage between page-outs and the swap file. An evicted page is copied into the queue instead of being
+ * written at once, since its frame is reused straight away. The queue is flushed when it holds maxPages pages, or
+ * when a page-out finds the oldest pending page older than the flush delay: pages are written in swap slot order, and
+ * each run of adjacent slots goes out as one write (processes own consecutive slots, see PCB.swapSlot, so pages of a
+ * segment evicted together usually form runs).
+ *
+ * A page that faults back in before the flush is read from the queue. It stays queued, since its copy in the swap
+ * file is not current yet. Writing a page already queued only replaces the queued copy, saving a write.
+ *
+ * All methods can be called from several threads. Flushes write while holding the queue's lock, so a page is always
+ * either queued or current in the file.
+ */
+public class PageOutQueue {
+    private final SwapFile swap;
+    private final int pageSize;
+    private final int maxPages;
+    private final long maxDelayNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeMap<Integer, ByteBuffer> pending = new TreeMap<>(); // Queued copies by swap slot
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>(); // Page buffers of flushed pages, for reuse
+    private final ByteBuffer run; // A run of adjacent pages being written, maxPages pages
+    private long oldest; // System.nanoTime() when the oldest pending page was queued
+
+    private final LongAdder queueHits = new LongAdder(); // Page-ins served from the queue
+    private final LongAdder absorbed = new LongAdder();  // Page-outs replacing a queued copy
+    private final LongAdder flushes = new LongAdder();
+
+    /**
+     * @param swap The swap file the pages are written to.
+     * @param pageSize The page size.
+     * @param maxPages Pages queued before a flush, at least 2.
+     * @param maxDelayNanos Longest a page waits in the queue before a page-out flushes it.
+     */
+    public PageOutQueue(SwapFile swap, int pageSize, int maxPages, long maxDelayNanos) {
+        this.swap = swap;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.maxDelayNanos = maxDelayNanos;
+        this.run = ByteBuffer.allocateDirect(maxPages * pageSize);
+    }
+
+    /**
+     * Queues a copy of the page, from the buffer's position to its limit, to be written to the slot.
+     * Flushes the queue if it is full or its oldest page has waited too long.
+     */
+    public void write(int slot, ByteBuffer page) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            ByteBuffer copy = pending.get(slot);
+            if (copy != null) {
+                absorbed.increment();
+            } else {
+                copy = freeBuffers.isEmpty() ? ByteBuffer.allocateDirect(pageSize) : freeBuffers.pop();
+                if (pending.isEmpty()) {
+                    oldest = now;
+                }
+                pending.put(slot, copy);
+            }
+            copy.clear();
+            copy.put(page);
+            if (pending.size() >= maxPages || now - oldest >= maxDelayNanos) {
+                flushLocked();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the page of the slot into the buffer, from its position to its limit, if it is queued.
+     *
+     * @return Whether the page was queued; if not, the swap file holds its current copy.
+     */
+    public boolean read(int slot, ByteBuffer page) {
+        lock.lock();
+        try {
+            ByteBuffer copy = pending.get(slot);
+            if (copy == null) {
+                return false;
+            }
+            page.put(copy.duplicate().flip());
+            queueHits.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops the queued pages of n consecutive slots starting at first, which are being freed
+    public void discard(int first, int n) {
+        lock.lock();
+        try {
+            Map<Integer, ByteBuffer> slots = pending.subMap(first, first + n);
+            freeBuffers.addAll(slots.values());
+            slots.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes all queued pages to the swap file
+    public void flush() {
+        lock.lock();
+        try {
+            flushLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes the queued pages in slot order, one write per run of adjacent slots
+    private void flushLocked() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int first = -1;
+        int count = 0;
+        Iterator<Map.Entry<Integer, ByteBuffer>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, ByteBuffer> entry = it.next();
+            int slot = entry.getKey();
+            if (count > 0 && (slot != first + count || count == maxPages)) {
+                writeRun(first);
+                count = 0;
+            }
+            if (count == 0) {
+                first = slot;
+            }
+            ByteBuffer copy = entry.getValue();
+            run.put(copy.flip());
+            freeBuffers.push(copy);
+            count++;
+            it.remove();
+        }
+        writeRun(first);
+        flushes.increment();
+    }
+
+    private void writeRun(int first) {
+        run.flip();
+        swap.write(first, run);
+        run.clear();
+    }
+
+    // Page-ins served from the queue, page-outs that replaced a queued copy, and flushes so far
+    public long getQueueHits() {
+        return queueHits.sum();
+    }
+
+    public long getAbsorbed() {
+        return absorbed.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    // Number of pages waiting to be written
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.Arrays;
+
+/**
+ * Page table of a segment, stored as primitive arrays instead of one object per page.
+ * Each page is one packed long: frame number in bits 0-31, resident set slot in bits 32-55,
+ * and the present, dirty, referenced, swapped and prefetched flags in bits 56-60. A page whose present flag is clear is
+ * not in memory. The swapped flag, set once the page has been written to swap, is the only one kept while the page
+ * is not loaded. The prefetched flag marks a page read ahead (see ReadAhead) that has not been accessed yet.
+ */
+public class PageTable {
+    private static final long FRAME_MASK = 0xFFFFFFFFL;
+    private static final int SLOT_SHIFT = 32;
+    private static final long SLOT_MASK = 0xFFFFFFL;
+    public static final int MAX_SLOT = (int) SLOT_MASK;
+    private static final long PRESENT = 1L << 56;
+    private static final long DIRTY = 1L << 57;
+    private static final long REFERENCED = 1L << 58;
+    private static final long SWAPPED = 1L << 59;
+    private static final long PREFETCHED = 1L << 60;
+
+    private final long[] entries;
+    // Logical time (process access count) of the last access to each page. Irrelevant if the page is not loaded.
+    private final long[] usedTime;
+
+    /**
+     * Constructor for PageTable. Creates a table of unloaded pages.
+     *
+     * @param count The number of pages.
+     */
+    public PageTable(int count) {
+        entries = new long[count];
+        usedTime = new long[count];
+        Arrays.fill(usedTime, -1);
+    }
+
+    public int length() {
+        return entries.length;
+    }
+
+    // Whether the page is loaded into memory
+    public boolean isLoaded(int pageNum) {
+        return (entries[pageNum] & PRESENT) != 0;
+    }
+
+    // Frame number where the page is loaded, -1 if it is not loaded
+    public int frameOf(int pageNum) {
+        long e = entries[pageNum];
+        return (e & PRESENT) != 0 ? (int) (e & FRAME_MASK) : -1;
+    }
+
+    // Index of the resident set entry holding the page, -1 if it is not loaded
+    public int slotOf(int pageNum) {
+        long e = entries[pageNum];
+        return (e & PRESENT) != 0 ? (int) ((e >>> SLOT_SHIFT) & SLOT_MASK) : -1;
+    }
+
+    public long usedTime(int pageNum) {
+        return usedTime[pageNum];
+    }
+
+    public boolean isDirty(int pageNum) {
+        return (entries[pageNum] & DIRTY) != 0;
+    }
+
+    public boolean isReferenced(int pageNum) {
+        return (entries[pageNum] & REFERENCED) != 0;
+    }
+
+    // Whether the page has a copy in swap, i.e. it has been written out at least once
+    public boolean isSwapped(int pageNum) {
+        return (entries[pageNum] & SWAPPED) != 0;
+    }
+
+    /**
+     * Sets the page as loaded into the frame with number frameNum. The page starts clean and referenced.
+     *
+     * @param pageNum The page number.
+     * @param frameNum The frame number where the page is loaded.
+     * @param slot The resident set slot holding the page.
+     * @param time The logical time of the load.
+     */
+    public void setLoad(int pageNum, int frameNum, int slot, long time) {
+        entries[pageNum] = (frameNum & FRAME_MASK) | ((long) slot << SLOT_SHIFT) | PRESENT | REFERENCED | (entries[pageNum] & SWAPPED);
+        usedTime[pageNum] = time;
+    }
+
+    /**
+     * Unloads the page from memory, clearing all flags except swapped.
+     */
+    public void setUnload(int pageNum) {
+        entries[pageNum] &= SWAPPED;
+        usedTime[pageNum] = -1;
+    }
+
+    // Records an access at the given logical time and sets the referenced flag
+    public void setUsedTime(int pageNum, long time) {
+        entries[pageNum] |= REFERENCED;
+        usedTime[pageNum] = time;
+    }
+
+    public void setDirty(int pageNum) {
+        entries[pageNum] |= DIRTY;
+    }
+
+    public void setSwapped(int pageNum) {
+        entries[pageNum] |= SWAPPED;
+    }
+
+    public boolean isPrefetched(int pageNum) {
+        return (entries[pageNum] & PREFETCHED) != 0;
+    }
+
+    // Marks a page just loaded as read ahead rather than accessed, clearing its referenced flag
+    public void setPrefetched(int pageNum) {
+        entries[pageNum] = (entries[pageNum] | PREFETCHED) & ~REFERENCED;
+    }
+
+    public void clearPrefetched(int pageNum) {
+        entries[pageNum] &= ~PREFETCHED;
+    }
+
+    public void clearReferenced(int pageNum) {
+        entries[pageNum] &= ~REFERENCED;
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Access counters of one process, kept per segment, and a histogram of its page fault service times.
+ *
+ * Like the rest of the PCB, they are only updated by the thread holding the PCB's lock, so count uses plain
+ * increments published with lazySet. snapshot() can be called from any thread while the process keeps running.
+ */
+public class ProcessStats {
+    /**
+     * What is counted. Every request that is not a fault is a hit (TLB or page table), see Snapshot.getHits;
+     * WRITES counts the requests that were writes. Evictions are counted against the segment of the page evicted,
+     * whichever access caused them: clean pages are dropped, dirty ones are written back to swap first.
+     * PREFETCHES counts the pages read ahead, PREFETCH_HITS those later accessed, each one a fault avoided.
+     */
+    public enum Counter {
+        REQUESTS, WRITES, FAULTS, CLEAN_EVICTIONS, DIRTY_EVICTIONS, PREFETCHES, PREFETCH_HITS
+    }
+
+    private static final int COUNTERS = Counter.values().length;
+
+    private final AtomicLongArray counts; // Indexed by segment number * COUNTERS + counter ordinal
+    private final int segmentCount;
+    final LatencyHistogram faultTime = new LatencyHistogram();
+
+    public ProcessStats(int segmentCount) {
+        this.segmentCount = segmentCount;
+        counts = new AtomicLongArray(segmentCount * COUNTERS);
+    }
+
+    // Adds one to the counter of the segment. For a fault, count REQUESTS first, so no snapshot has more faults than requests.
+    void count(int segmentNum, Counter counter) {
+        int index = segmentNum * COUNTERS + counter.ordinal();
+        counts.lazySet(index, counts.get(index) + 1);
+    }
+
+    // The counter summed over all segments
+    public long total(Counter counter) {
+        long total = 0;
+        for (int seg = 0; seg < segmentCount; seg++) {
+            total += counts.get(seg * COUNTERS + counter.ordinal());
+        }
+        return total;
+    }
+
+    // Adds the totals of another process's counters to segment 0 of these, e.g. to keep those of a destroyed process
+    void addTotals(ProcessStats other) {
+        for (Counter counter : Counter.values()) {
+            counts.addAndGet(counter.ordinal(), other.total(counter));
+        }
+    }
+
+    public Snapshot snapshot(String id) {
+        long[][] segments = new long[segmentCount][COUNTERS];
+        for (int seg = 0; seg < segmentCount; seg++) {
+            // Read in reverse of the order count is called in, so that faults <= requests and prefetch hits <= prefetches
+            for (int c = COUNTERS - 1; c >= 0; c--) {
+                segments[seg][c] = counts.get(seg * COUNTERS + c);
+            }
+        }
+        return new Snapshot(id, segments, faultTime.snapshot());
+    }
+
+    /**
+     * Copy of the counters and fault time histogram of a process at one point in time.
+     */
+    public static class Snapshot {
+        public final String id;
+        public final LatencyHistogram.Snapshot faultTime;
+        private final long[][] segments; // [segment][counter ordinal]
+
+        Snapshot(String id, long[][] segments, LatencyHistogram.Snapshot faultTime) {
+            this.id = id;
+            this.segments = segments;
+            this.faultTime = faultTime;
+        }
+
+        public int getSegmentCount() {
+            return segments.length;
+        }
+
+        public long get(int segmentNum, Counter counter) {
+            return segments[segmentNum][counter.ordinal()];
+        }
+
+        public long total(Counter counter) {
+            long total = 0;
+            for (long[] segment : segments) {
+                total += segment[counter.ordinal()];
+            }
+            return total;
+        }
+
+        // Requests of the segment answered without a page fault
+        public long getHits(int segmentNum) {
+            return get(segmentNum, Counter.REQUESTS) - get(segmentNum, Counter.FAULTS);
+        }
+    }
+}
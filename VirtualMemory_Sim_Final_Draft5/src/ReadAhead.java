@@ -0,0 +1,56 @@
+/**
+ * Sequential read-ahead state of one process, one stream per segment. A fault on the page that continues the
+ * segment's stream (the page after the previous fault, or after the pages read ahead for it) is taken as sequential,
+ * and the next pages of the segment are loaded in the same fault (see OS.readAhead).
+ *
+ * Each segment's window adapts like TCP's congestion window: it grows by one page every time a page read ahead is
+ * used, and halves every time one is evicted without having been used.
+ */
+public class ReadAhead {
+    private static final int INITIAL_WINDOW = 2;
+
+    private final int maxWindow;
+    private final int[] nextPage; // Page that would continue the stream of each segment, -1 before the first fault
+    private final int[] window;   // Pages to read ahead on the next sequential fault of each segment
+
+    /**
+     * @param segmentCount Number of segments of the process.
+     * @param maxWindow Largest number of pages read ahead in one fault.
+     */
+    public ReadAhead(int segmentCount, int maxWindow) {
+        this.maxWindow = maxWindow;
+        nextPage = new int[segmentCount];
+        window = new int[segmentCount];
+        for (int seg = 0; seg < segmentCount; seg++) {
+            nextPage[seg] = -1;
+            window[seg] = Math.min(INITIAL_WINDOW, maxWindow);
+        }
+    }
+
+    /**
+     * Records a fault and returns how many of the following pages to read ahead: 0 unless the fault continues the
+     * segment's stream.
+     *
+     * @param limit Most pages that may be read ahead, e.g. the pages left in the segment.
+     */
+    public int onFault(int segmentNum, int pageNum, int limit) {
+        int n = pageNum == nextPage[segmentNum] ? Math.min(window[segmentNum], limit) : 0;
+        nextPage[segmentNum] = pageNum + 1 + n;
+        return n;
+    }
+
+    // A page read ahead was accessed: the stream is real, read further ahead
+    public void onUsed(int segmentNum) {
+        window[segmentNum] = Math.min(window[segmentNum] + 1, maxWindow);
+    }
+
+    // A page read ahead was evicted unused: read less ahead
+    public void onWasted(int segmentNum) {
+        window[segmentNum] = Math.max(window[segmentNum] / 2, 1);
+    }
+
+    // Current window of the segment
+    public int getWindow(int segmentNum) {
+        return window[segmentNum];
+    }
+}
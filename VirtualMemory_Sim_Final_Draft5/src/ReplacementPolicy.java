@@ -0,0 +1,46 @@
+/**
+ * Page replacement policy of a resident set. Resident pages are identified by their resident set slot,
+ * a small int below the resident set size. Policies that remember evicted pages (2Q, ARC) also get a page key,
+ * the process-wide page number from PCB.virtualPage, when a page is loaded.
+ *
+ * The PCB drives a policy as follows: onLoad when a page is loaded into a slot (onPreload for the pages loaded when
+ * the process is created), onHit on every later access to it, and on a page fault with a full resident set
+ * selectVictim followed by onEvict of the chosen slot and onLoad of the incoming page into the same slot.
+ * onEvict may also be called without selectVictim to take a slot away.
+ */
+public interface ReplacementPolicy {
+
+    /**
+     * Records that a page was loaded into the slot.
+     *
+     * @param slot The resident set slot now holding the page.
+     * @param pageKey The process-wide page number of the page.
+     */
+    void onLoad(int slot, int pageKey);
+
+    /**
+     * Records that a page was loaded into the slot when the process was created, before any access to it.
+     * Only policies that follow the access sequence (OptPolicy) need to tell this apart from onLoad.
+     */
+    default void onPreload(int slot, int pageKey) {
+        onLoad(slot, pageKey);
+    }
+
+    /**
+     * Records an access to the page resident in the slot.
+     */
+    void onHit(int slot);
+
+    /**
+     * Records that the page in the slot was removed from the resident set.
+     */
+    void onEvict(int slot);
+
+    /**
+     * Chooses the slot whose page should be replaced. The slot stays resident until onEvict is called.
+     *
+     * @param incomingKey The process-wide page number of the page that faulted.
+     * @return The slot to evict.
+     */
+    int selectVictim(int incomingKey);
+}
@@ -6,20 +6,49 @@ import java.util.Scanner;
 
 public class Shell {
     public static final String helpMess =
-            "create process processId sizes of segments\t--> Create a process\n" +
+            "create process processId sizes of segments [policy]\t--> Create a process, optionally with its own replacement policy\n" +
+                    "set policy policyName\t--> Set the replacement policy of processes created later (" + OS.REPLACE_POLICY.labels() + ")\n" +
                     "destroy process processId\t--> Destroy a process\n" +
                     "show memory\t--> Display memory usage\n" +
                     "show process processId\t--> Display resident set, replacement policy, segment table, page table of the process\n" +
-                    "address processName segmentNumber segmentOffset\t\t--> Map logical address to physical address\n" +
-                    "page replace processID segmentNum pageNum\t\t-->Do page replacement"+
+                    "show stats\t--> Display requests, hits, faults, evictions and write-backs per process and segment, and fault service times\n" +
+                    "address processName segmentNumber segmentOffset [r|w]\t\t--> Map logical address to physical address for a read (default) or a write\n" +
+                    "page replace processID segmentNum pageNum\t\t-->Do page replacement\n" +
+                    "run workload [" + WorkloadGenerator.LOCALITY.labels() + "] [accesses] [seed]\t--> Make synthetic accesses to the processes (see WorkloadSpec)\n" +
                     "help or h\t-> Get help\n" +
                     "quit or q\t--> Exit\n";
 
+    /**
+     * Memory geometry can be set on the command line, e.g. --memory=1G --page=4K (see MemoryConfig.fromArgs),
+     * the amount of OS output with --log=OFF|ERROR|INFO|DEBUG (default DEBUG, every translation and page I/O)
+     * the resident set sizing with --scope=local|pff|global (see OS.REPLACE_SCOPE) and --pff-window=N,
+     * sequential read-ahead of up to N pages with --readahead=N (see ReadAhead),
+     * what new processes load up front with --init-load=eager|demand|hybrid (see OS.INIT_LOAD),
+     * and the defaults of the run workload command with --workload=, --seed=, --writes=... (see WorkloadSpec.fromArgs).
+     */
     public static void main(String[] args) {
-        printMessage();
+        MemoryConfig config;
+        OS.REPLACE_SCOPE scope;
+        long pffWindow;
+        int readAhead;
+        OS.INIT_LOAD initLoad;
+        WorkloadSpec workload;
+        try {
+            config = MemoryConfig.fromArgs(args);
+            scope = OS.REPLACE_SCOPE.fromArgs(args);
+            pffWindow = OS.pffWindowFromArgs(args);
+            readAhead = OS.readAheadFromArgs(args);
+            initLoad = OS.INIT_LOAD.fromArgs(args);
+            workload = WorkloadSpec.fromArgs(args);
+            EventLog.configure(args, EventLog.Level.DEBUG);
+        } catch (IllegalArgumentException ex) {
+            System.out.println(ex.getMessage());
+            return;
+        }
+        printMessage(config, scope, initLoad);
         setReplacePolicy();
         System.out.println("Enter 'help' for more information");
-        shell();
+        shell(config, scope, pffWindow, readAhead, initLoad, workload);
         Input.close();
     }
 
@@ -28,26 +57,55 @@ public class Shell {
      * 2. destroy process pname
      * 3. show memory
      * 4. show process pname
-     * 5. help or h
-     * 6. quit or q
+     * 5. show stats
+     * 6. help or h
+     * 7. quit or q
      * 8. address pname sgementNum segmentOffset
      */
     public static void shell() {
-        OS os = new OS();
-        System.out.print(">>> ");
+        shell(MemoryConfig.DEFAULT);
+    }
+
+    public static void shell(MemoryConfig config) {
+        shell(config, OS.REPLACE_SCOPE.LOCAL, OS.DEFAULT_PFF_WINDOW, 0, OS.INIT_LOAD.EAGER, WorkloadSpec.DEFAULT);
+    }
+
+    public static void shell(MemoryConfig config, OS.REPLACE_SCOPE scope, long pffWindow, int readAhead, OS.INIT_LOAD initLoad,
+                             WorkloadSpec workload) {
+        OS os = new OS(config, scope);
+        os.setPffWindow(pffWindow);
+        os.setReadAhead(readAhead);
+        os.setInitLoad(initLoad);
+        prompt();
         while(true) {
             String command = Input.nextLine();
             if(command == null || command.trim().equals("")) {
-                System.out.print(">>> ");
+                prompt();
                 continue;
             }
 
             String[] words = command.split(" ");
             if(words.length >= 4 && "create".equals(words[0].trim()) && "process".equals(words[1].trim())) {
                 String processId = words[2].trim();
-                int[] segments = new int[words.length - 3];
+                // A trailing word that is not a number names the replacement policy of the process
+                OS.REPLACE_POLICY policy = OS.ReplacePolicy;
+                int end = words.length;
+                if(!words[end - 1].trim().matches("\\d+")) {
+                    try {
+                        policy = OS.REPLACE_POLICY.parse(words[end - 1].trim());
+                    } catch (IllegalArgumentException ex) {
+                        System.out.println(ex.getMessage() + " (use one of " + OS.REPLACE_POLICY.labels() + ")");
+                        prompt();
+                        continue;
+                    }
+                    end--;
+                }
+                int[] segments = new int[end - 3];
                 try{
-                    for(int i = 3, index = 0; i < words.length; i++, index++) {
+                    if(segments.length == 0) {
+                        throw new Exception();
+                    }
+                    for(int i = 3, index = 0; i < end; i++, index++) {
                         segments[index] = Integer.parseInt(words[i]);
                         if(segments[index] <= 0) {
                             throw new Exception();
@@ -55,10 +113,18 @@ public class Shell {
                     }
                 } catch (Exception ex) {
                     System.out.println("Invalid command. Segment size must be a positive integer (use 'help' for assistance)");
-                    System.out.print(">>> ");
+                    prompt();
                     continue;
                 }
-                os.createProcess(processId, segments);
+                os.createProcess(processId, segments, policy);
+
+            } else if(words.length == 3 && "set".equals(words[0].trim()) && "policy".equals(words[1].trim())) {
+                try {
+                    OS.setReplacePolicy(OS.REPLACE_POLICY.parse(words[2].trim()));
+                    System.out.println("Set replacement policy to " + OS.ReplacePolicy.label());
+                } catch (IllegalArgumentException ex) {
+                    System.out.println(ex.getMessage() + " (use one of " + OS.REPLACE_POLICY.labels() + ")");
+                }
 
             } else if(words.length == 3 && "destroy".equals(words[0].trim()) && "process".equals(words[1].trim()) ) {
                 String processId = words[2].trim();
@@ -67,6 +133,8 @@ public class Shell {
 
             } else if(words.length == 2 && "show".equals(words[0].trim()) && "memory".equals(words[1].trim()) ) {
                 os.showMemory();
+            } else if(words.length == 2 && "show".equals(words[0].trim()) && "stats".equals(words[1].trim()) ) {
+                System.out.print(os.getStats().format());
             }
             else if (words.length == 5 && "page".equals(words[0].trim()) && "replace".equals(words[1].trim())) {
                    String porcessId = words[2].trim();
@@ -84,7 +152,7 @@ public class Shell {
             } else if(words.length == 1 && "quit".equals(words[0].trim()) || "q".equals(words[0].trim()) ) {
                 System.out.println("quit");
                 break;
-            } else if(words.length == 4 && "address".equals(words[0].trim())) {
+            } else if((words.length == 4 || words.length == 5) && "address".equals(words[0].trim())) {
                 String porcessId = words[1].trim();
                 int segmentNum, segmentOffset;
                 try{
@@ -95,53 +163,118 @@ public class Shell {
                     }
                 } catch (Exception ex) {
                     System.out.println("Invalid command. Segment number and offset must be positive integers (use 'help' for assistance)");
-                    System.out.print(">>> ");
+                    prompt();
                     continue;
                 }
-                os.toPhysicalAddress(porcessId, segmentNum, segmentOffset);
+                OS.ACCESS_TYPE type = OS.ACCESS_TYPE.READ;
+                if(words.length == 5) {
+                    String access = words[4].trim();
+                    if("w".equalsIgnoreCase(access)) {
+                        type = OS.ACCESS_TYPE.WRITE;
+                    } else if(!"r".equalsIgnoreCase(access)) {
+                        System.out.println("Invalid command. Access type must be r or w (use 'help' for assistance)");
+                        prompt();
+                        continue;
+                    }
+                }
+                os.toPhysicalAddress(porcessId, segmentNum, segmentOffset, type);
+
+            } else if(words.length >= 2 && words.length <= 5 && "run".equals(words[0].trim()) && "workload".equals(words[1].trim())) {
+                // Words left out keep the workload given on the command line
+                WorkloadSpec spec;
+                try {
+                    spec = workload.with(words.length > 2 ? WorkloadGenerator.LOCALITY.parse(words[2]) : workload.locality,
+                            words.length > 4 ? Long.parseLong(words[4].trim()) : workload.seed,
+                            words.length > 3 ? Long.parseLong(words[3].trim()) : workload.accesses);
+                } catch (IllegalArgumentException ex) {
+                    System.out.println(ex instanceof NumberFormatException
+                            ? "Invalid command. Access count and seed must be integers (use 'help' for assistance)" : ex.getMessage());
+                    prompt();
+                    continue;
+                }
+                WorkloadGenerator generator = new WorkloadGenerator(os, os.getAllActivePCBs(), spec);
+                long faults = os.getPageFault();
+                while(generator.step()) {
+                }
+                EventLog.flush();
+                System.out.println("Ran " + spec + ": " + generator.getAccesses() + " accesses (" + generator.getRejected()
+                        + " rejected), " + (os.getPageFault() - faults) + " page faults");
 
             } else {
                 System.out.println("Invalid command (use 'help' for assistance)");
             }
 
-            System.out.print(">>> ");
+            prompt();
         }
+        os.close();
+    }
+
+    // Waits for the OS events of the last command to be printed, then shows the prompt
+    private static void prompt() {
+        EventLog.flush();
+        System.out.print(">>> ");
     }
 
     /**
      * 璁剧疆榛樿缃崲绛栫暐
      */
     public static void setReplacePolicy() {
-        System.out.print(">>> Please set the replacement policy (0 for FIFO, 1 for LRU): ");
+        // Policies are numbered in declaration order: 0 for FIFO, 1 for LRU, ...
+        OS.REPLACE_POLICY[] policies = OS.REPLACE_POLICY.values();
+        StringBuilder choices = new StringBuilder();
+        for(int i = 0; i < policies.length; i++) {
+            choices.append(i == 0 ? "" : ", ").append(i).append(" for ").append(policies[i].label());
+        }
+        System.out.print(">>> Please set the replacement policy (" + choices + "): ");
         while(true) {
             String mess = Input.nextLine().trim();
-            if("0".equals(mess)) {
-                OS.setReplacePolicy(OS.REPLACE_POLICY.FIFO);
-                System.out.println("Set replacement policy to FIFO");
-                break;
-            } else if("1".equals(mess)) {
-                OS.setReplacePolicy(OS.REPLACE_POLICY.LRU);
-                System.out.println("Set replacement policy to LRU");
+            OS.REPLACE_POLICY policy = null;
+            try {
+                int choice = Integer.parseInt(mess);
+                if(choice >= 0 && choice < policies.length) {
+                    policy = policies[choice];
+                }
+            } catch (NumberFormatException ex) {
+                // Also accept the policy name
+                try {
+                    policy = OS.REPLACE_POLICY.parse(mess);
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+            if(policy != null) {
+                OS.setReplacePolicy(policy);
+                System.out.println("Set replacement policy to " + policy.label());
                 break;
-            } else {
-                System.out.print(">>> Invalid input. Please set the replacement policy (0 for FIFO, 1 for LRU): ");
             }
+            System.out.print(">>> Invalid input. Please set the replacement policy (" + choices + "): ");
         }
     }
 
     /**
      * Print the basic and necessary information
      */
-    public static void printMessage() {
+    public static void printMessage(MemoryConfig config, OS.REPLACE_SCOPE scope, OS.INIT_LOAD initLoad) {
         String version = "1.0";
 
         System.out.println("Memory Management [version " + version + "]");
         System.out.println("Author: group666");
         System.out.println();
-        System.out.println("Memory size is 64K, page frame size is 1K, a process can have a maximum of 4 segments, and each segment is at most 16K. A process resident set has a maximum of 8 pages.");
-        System.out.println("Resident set replacement policy: Local policy (select one page only from the process's resident set)");
-        System.out.println("Page eviction policy: FIFO, LRU");
-        System.out.println("Process initial loading policy: Load pages sequentially from segment 0, segment 1, ... until the resident set is fully loaded");
+        System.out.println(config);
+        if(scope == OS.REPLACE_SCOPE.GLOBAL) {
+            System.out.println("Resident set replacement policy: Global policy (select one page from all processes' resident sets, resident sets grow and shrink)");
+        } else if(scope == OS.REPLACE_SCOPE.PFF) {
+            System.out.println("Resident set replacement policy: Local policy, resident sets sized by page fault frequency");
+        } else {
+            System.out.println("Resident set replacement policy: Local policy (select one page only from the process's resident set)");
+        }
+        System.out.println("Page eviction policy: " + OS.REPLACE_POLICY.labels().replace("|", ", ") + ", chosen per process");
+        if(initLoad == OS.INIT_LOAD.DEMAND) {
+            System.out.println("Process initial loading policy: Load no pages, the resident set is reserved and filled by page faults");
+        } else if(initLoad == OS.INIT_LOAD.HYBRID) {
+            System.out.println("Process initial loading policy: Load the pages of segment 0 that fit, the rest of the resident set is filled by page faults");
+        } else {
+            System.out.println("Process initial loading policy: Load pages sequentially from segment 0, segment 1, ... until the resident set is fully loaded");
+        }
         System.out.println("Placement policy: Determine where a process's resident set is placed in memory. Preferably placed in low page frames");
         System.out.println();
     }
@@ -0,0 +1,76 @@
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Small line chart of the latest samples of one value, scaled to the largest sample shown, with the title and latest
+ * value written above it. Older samples scroll off to the left.
+ */
+public class Sparkline extends Canvas {
+    private static final double TEXT_HEIGHT = 14;
+
+    private final String title;
+    private final String format; // Format of the latest value, e.g. "%.0f/s"
+    private final double[] samples; // Ring of the latest samples
+    private int next;  // Where the next sample goes
+    private int count; // Samples in the ring
+    private final double[] xs;
+    private final double[] ys;
+
+    /**
+     * @param title Title written before the latest value.
+     * @param format Format of the latest value, as in String.format.
+     * @param capacity Number of samples shown.
+     */
+    public Sparkline(String title, String format, int capacity, double width, double height) {
+        super(width, height);
+        this.title = title;
+        this.format = format;
+        this.samples = new double[capacity];
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        redraw();
+    }
+
+    // Adds a sample and redraws
+    public void add(double value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        redraw();
+    }
+
+    private void redraw() {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, getWidth(), getHeight());
+        gc.setFill(Color.BLACK);
+        gc.setFont(Font.font(11));
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        String latest = count == 0 ? "-" : String.format(format, samples[(next - 1 + samples.length) % samples.length]);
+        gc.fillText(title + ": " + latest, 0, 0);
+        if (count < 2) {
+            return;
+        }
+
+        double max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        double top = TEXT_HEIGHT + 1;
+        double chartHeight = getHeight() - top - 1;
+        double step = getWidth() / (samples.length - 1);
+        int first = (next - count + samples.length) % samples.length;
+        for (int i = 0; i < count; i++) {
+            double value = samples[(first + i) % samples.length];
+            xs[i] = getWidth() - (count - 1 - i) * step; // The latest sample on the right edge
+            ys[i] = top + chartHeight * (max == 0 ? 1 : 1 - value / max);
+        }
+        gc.setStroke(Color.STEELBLUE);
+        gc.setLineWidth(1.5);
+        gc.strokePolyline(xs, ys, count);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * SplitMix64 pseudo-random generator (Steele, Lea and Flood, "Fast splittable pseudorandom number generators"):
+ * one addition and a 64-bit mix per number, with no shared state, so the same seed always gives the same sequence.
+ * Not thread-safe; give each thread its own generator with split.
+ */
+public class SplitMix64 {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    public SplitMix64(long seed) {
+        this.state = seed;
+    }
+
+    public long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns a uniformly distributed int between 0 (inclusive) and bound (exclusive), by multiplying instead of
+     * dividing (Lemire, "Fast random integer generation in an interval").
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + bound);
+        }
+        long m = (nextLong() >>> 32) * bound;
+        long low = m & 0xFFFFFFFFL;
+        if (low < bound) {
+            // Rarely, the draw falls in the few values that would bias the result: draw again
+            long threshold = ((1L << 32) - bound) % bound;
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    // Uniformly distributed double between 0 (inclusive) and 1 (exclusive)
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    // A new generator seeded from this one, for an independent stream
+    public SplitMix64 split() {
+        return new SplitMix64(nextLong());
+    }
+}
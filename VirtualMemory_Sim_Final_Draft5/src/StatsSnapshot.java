@@ -0,0 +1,83 @@
+import java.util.List;
+
+/**
+ * Statistics of an OS at one point in time, see OS.getStats(): request and fault totals, counter totals and the fault
+ * service time histogram since the OS was created (including processes destroyed since), and the counters of each
+ * live process.
+ */
+public class StatsSnapshot {
+    public final long requests;
+    public final long faults;
+    public final LatencyHistogram.Snapshot faultTime;
+    public final ProcessStats.Snapshot retired; // Counter totals of the processes destroyed so far
+    public final List<ProcessStats.Snapshot> processes;
+
+    public StatsSnapshot(long requests, long faults, LatencyHistogram.Snapshot faultTime, ProcessStats.Snapshot retired,
+                         List<ProcessStats.Snapshot> processes) {
+        this.requests = requests;
+        this.faults = faults;
+        this.faultTime = faultTime;
+        this.retired = retired;
+        this.processes = processes;
+    }
+
+    public double getMissRatio() {
+        return requests == 0 ? 0.0 : (double) faults / requests;
+    }
+
+    // The counter summed over the live processes and those destroyed
+    public long total(ProcessStats.Counter counter) {
+        long total = retired.total(counter);
+        for (ProcessStats.Snapshot process : processes) {
+            total += process.total(counter);
+        }
+        return total;
+    }
+
+    /**
+     * Read-ahead summary of all processes, destroyed ones included: pages read ahead, the fraction of them accessed (each access a page
+     * fault avoided), and the faults avoided.
+     */
+    public String formatReadAhead() {
+        long prefetches = total(ProcessStats.Counter.PREFETCHES);
+        long hits = total(ProcessStats.Counter.PREFETCH_HITS);
+        return String.format("Read-ahead: %d pages, accuracy: %.1f%%, faults avoided: %d",
+                prefetches, prefetches == 0 ? 0.0 : 100.0 * hits / prefetches, hits);
+    }
+
+    /**
+     * Formats the snapshot as a table with one line per process and one per segment, followed by each process's
+     * fault service times.
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Requests: %d, page faults: %d, miss ratio: %.4f%n", requests, faults, getMissRatio()));
+        sb.append("Fault service time: ").append(faultTime).append('\n');
+        if (total(ProcessStats.Counter.PREFETCHES) > 0) {
+            sb.append(formatReadAhead()).append('\n');
+        }
+        if (processes.isEmpty()) {
+            return sb.toString();
+        }
+        // Dirty evictions are the pages written back to swap
+        String row = "%-10s %-8s %10s %10s %10s %10s %12s %12s%n";
+        sb.append(String.format(row, "Process", "Segment", "Requests", "Writes", "Hits", "Faults", "Clean evict", "Dirty evict"));
+        for (ProcessStats.Snapshot process : processes) {
+            long requests = process.total(ProcessStats.Counter.REQUESTS);
+            long faults = process.total(ProcessStats.Counter.FAULTS);
+            sb.append(String.format(row, process.id, "all", requests, process.total(ProcessStats.Counter.WRITES),
+                    requests - faults, faults, process.total(ProcessStats.Counter.CLEAN_EVICTIONS),
+                    process.total(ProcessStats.Counter.DIRTY_EVICTIONS)));
+            for (int seg = 0; seg < process.getSegmentCount(); seg++) {
+                sb.append(String.format(row, "", seg, process.get(seg, ProcessStats.Counter.REQUESTS),
+                        process.get(seg, ProcessStats.Counter.WRITES), process.getHits(seg),
+                        process.get(seg, ProcessStats.Counter.FAULTS), process.get(seg, ProcessStats.Counter.CLEAN_EVICTIONS),
+                        process.get(seg, ProcessStats.Counter.DIRTY_EVICTIONS)));
+            }
+        }
+        for (ProcessStats.Snapshot process : processes) {
+            sb.append("Process ").append(process.id).append(" fault service time: ").append(process.faultTime).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Swap space in a file, divided into page-sized slots. Pages move between frames and slots with positional
+ * FileChannel reads and writes, which several threads can issue at the same time.
+ * Each process gets a run of consecutive slots when it is created, one per virtual page (see PCB.swapSlot), so the
+ * pages of a segment are adjacent in the file. The file is deleted when the swap file is closed.
+ */
+public class SwapFile {
+    private final FileChannel channel;
+    private final int pageShift;
+    private final FrameBitmap freeSlots; // One bit per slot, as for frames
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder writeOps = new LongAdder(); // Writes issued, each of one or more adjacent pages
+
+    /**
+     * Creates the swap file, replacing any existing file.
+     *
+     * @param path The file path.
+     * @param size Swap space in bytes, a multiple of the page size. The file only grows as pages are written.
+     * @param pageSize The page size, a power of 2.
+     * @throws UncheckedIOException If the file cannot be created.
+     */
+    public SwapFile(Path path, long size, int pageSize) {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create swap file " + path, e);
+        }
+        this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+        this.freeSlots = new FrameBitmap((int) (size / pageSize));
+    }
+
+    /**
+     * Reserves n consecutive slots, the lowest such run first.
+     *
+     * @return The first slot, or -1 if there is no run of n free slots.
+     */
+    public int allocate(int n) {
+        return freeSlots.allocateRun(n);
+    }
+
+    // Frees n consecutive slots starting at first
+    public void free(int first, int n) {
+        for (int i = 0; i < n; i++) {
+            freeSlots.free(first + i);
+        }
+    }
+
+    /**
+     * Reads the page in the slot into the buffer, from its position to its limit (one page).
+     * Parts of the slot never written read as zeros.
+     */
+    public void read(int slot, ByteBuffer page) {
+        long position = (long) slot << pageShift;
+        try {
+            while (page.hasRemaining()) {
+                int n = channel.read(page, position);
+                if (n < 0) {
+                    // Past the end of the file
+                    while (page.hasRemaining()) {
+                        page.put((byte) 0);
+                    }
+                    break;
+                }
+                position += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Swap read failed at slot " + slot, e);
+        }
+        reads.increment();
+    }
+
+    // Writes the buffer, from its position to its limit (one page, or the pages of adjacent slots), from the slot on
+    public void write(int slot, ByteBuffer pages) {
+        long position = (long) slot << pageShift;
+        int n = pages.remaining() >>> pageShift;
+        try {
+            while (pages.hasRemaining()) {
+                position += channel.write(pages, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Swap write failed at slot " + slot, e);
+        }
+        writes.add(n);
+        writeOps.increment();
+    }
+
+    // Number of free slots
+    public int freeCount() {
+        return freeSlots.freeCount();
+    }
+
+    // Pages read and written so far
+    public long getReads() {
+        return reads.sum();
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    // Writes issued so far; fewer than getWrites when page-outs are coalesced (see PageOutQueue)
+    public long getWriteOps() {
+        return writeOps.sum();
+    }
+
+    // Closes and deletes the file
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Software translation lookaside buffer: a set-associative cache from (process handle, virtual page) to frame number.
+ * A virtual page is the process-wide page index PCB.virtualPage(segment, page). Entries are kept in flat arrays,
+ * so a lookup is a hash and a probe of the ways of one set. Each set replaces its entries round-robin.
+ *
+ * The TLB is shared by all processes and safe for concurrent use. Each set has its own StampedLock: lookups read
+ * the set optimistically and retry only if a writer changed it meanwhile, inserts and invalidations lock the set.
+ */
+public class Tlb {
+    private final int ways;
+    private final int setShift; // 64 - log2(number of sets), to take the set index from the top bits of the hash
+    private final long[] keys;
+    private final int[] frames; // -1 marks an invalid entry
+    private final int[] nextVictim; // Round-robin replacement pointer of each set
+    private final StampedLock[] locks; // One per set
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor for Tlb.
+     *
+     * @param entries Total number of entries, 0 for no TLB (every lookup misses).
+     * @param ways Entries per set. entries / ways must be a power of 2.
+     */
+    public Tlb(int entries, int ways) {
+        if (entries == 0) {
+            ways = 1;
+        }
+        this.ways = ways;
+        int sets = entries / ways;
+        this.setShift = 64 - Integer.numberOfTrailingZeros(Math.max(sets, 1));
+        keys = new long[entries];
+        frames = new int[entries];
+        nextVictim = new int[sets];
+        locks = new StampedLock[sets];
+        for (int i = 0; i < sets; i++) {
+            locks[i] = new StampedLock();
+        }
+        flush();
+    }
+
+    /**
+     * Returns the frame holding the virtual page of the process, or -1 on a TLB miss.
+     */
+    public int lookup(int handle, int virtualPage) {
+        if (frames.length == 0) {
+            misses.increment();
+            return -1;
+        }
+        long key = key(handle, virtualPage);
+        int set = setOf(key);
+        StampedLock lock = locks[set];
+        long stamp = lock.tryOptimisticRead();
+        int frameNum = probe(set, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                frameNum = probe(set, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (frameNum >= 0) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return frameNum;
+    }
+
+    /**
+     * Caches the translation of the virtual page, replacing an entry of its set if the set is full.
+     */
+    public void insert(int handle, int virtualPage, int frameNum) {
+        if (frames.length == 0) {
+            return;
+        }
+        long key = key(handle, virtualPage);
+        int set = setOf(key);
+        int base = set * ways;
+        long stamp = locks[set].writeLock();
+        try {
+            int target = -1;
+            for (int i = base; i < base + ways; i++) {
+                if (frames[i] < 0 || keys[i] == key) {
+                    target = i;
+                    break;
+                }
+            }
+            if (target < 0) {
+                target = base + nextVictim[set];
+                nextVictim[set] = (nextVictim[set] + 1) % ways;
+            }
+            keys[target] = key;
+            frames[target] = frameNum;
+        } finally {
+            locks[set].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drops the translation of one virtual page, called when the page is evicted.
+     */
+    public void invalidate(int handle, int virtualPage) {
+        if (frames.length == 0) {
+            return;
+        }
+        long key = key(handle, virtualPage);
+        int set = setOf(key);
+        int base = set * ways;
+        long stamp = locks[set].writeLock();
+        try {
+            for (int i = base; i < base + ways; i++) {
+                if (keys[i] == key) {
+                    frames[i] = -1;
+                }
+            }
+        } finally {
+            locks[set].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drops every translation of a process, called when the process is destroyed so its handle can be reused.
+     */
+    public void flushProcess(int handle) {
+        for (int set = 0; set < locks.length; set++) {
+            long stamp = locks[set].writeLock();
+            try {
+                for (int i = set * ways; i < (set + 1) * ways; i++) {
+                    if ((int) (keys[i] >>> 32) == handle) {
+                        frames[i] = -1;
+                    }
+                }
+            } finally {
+                locks[set].unlockWrite(stamp);
+            }
+        }
+    }
+
+    // Drops every translation
+    public void flush() {
+        for (int set = 0; set < locks.length; set++) {
+            long stamp = locks[set].writeLock();
+            try {
+                for (int i = set * ways; i < (set + 1) * ways; i++) {
+                    frames[i] = -1;
+                }
+            } finally {
+                locks[set].unlockWrite(stamp);
+            }
+        }
+    }
+
+    public int size() {
+        return frames.length;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Fraction of lookups that hit, 0 if there were none
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    // Frame of the key in the set, -1 if absent. Under an optimistic read the result is only used once validated.
+    private int probe(int set, long key) {
+        int base = set * ways;
+        for (int i = base; i < base + ways; i++) {
+            if (keys[i] == key) {
+                int frameNum = frames[i];
+                if (frameNum >= 0) {
+                    return frameNum;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static long key(int handle, int virtualPage) {
+        return ((long) handle << 32) | (virtualPage & 0xFFFFFFFFL);
+    }
+
+    private int setOf(long key) {
+        return setShift == 64 ? 0 : (int) ((key * 0x9E3779B97F4A7C15L) >>> setShift);
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts traces between the text format of TraceReplayer and the binary format of BinaryTrace, in the direction
+ * given by the input: a binary trace becomes text, anything else is parsed as text. Replaying either form makes the
+ * same requests.
+ */
+public class TraceConverter {
+
+    // Text to binary. Names get a new pid at each process line, so a name created again after its destruction is
+    // another process of the trace; names accessed or destroyed without being created are declared.
+    static void toBinary(Path input, Path output) throws IOException {
+        Map<String, Integer> pids = new HashMap<>(); // Current pid of each name
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.US_ASCII);
+             BinaryTraceWriter writer = new BinaryTraceWriter(output)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.trim().split("[ \t]+");
+                if (fields[0].isEmpty() || fields[0].startsWith("#")) {
+                    continue;
+                }
+                try {
+                    if (fields[0].equals("process")) {
+                        int[] segments = new int[fields.length - 2];
+                        for (int i = 0; i < segments.length; i++) {
+                            segments[i] = Integer.parseInt(fields[i + 2]);
+                        }
+                        pids.put(fields[1], writer.create(fields[1], segments));
+                    } else if (fields[0].equals("destroy") && fields.length == 2) {
+                        writer.destroy(pids.computeIfAbsent(fields[1], writer::declare));
+                    } else if (fields.length == 3 || fields.length == 4) {
+                        boolean write = fields.length == 4 && fields[3].equalsIgnoreCase("W");
+                        if (fields.length == 4 && !write && !fields[3].equalsIgnoreCase("R")) {
+                            throw new IllegalArgumentException("access type must be R or W");
+                        }
+                        writer.access(pids.computeIfAbsent(fields[0], writer::declare),
+                                Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), write);
+                    } else {
+                        throw new IllegalArgumentException("wrong number of fields");
+                    }
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Malformed trace at line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Binary to text
+    static void toText(Path input, Path output) throws IOException {
+        try (BinaryTrace trace = BinaryTrace.open(input);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.US_ASCII)) {
+            BinaryTrace.Cursor cursor = trace.cursor(0, trace.getBlockCount());
+            StringBuilder sb = new StringBuilder();
+            while (cursor.next()) {
+                sb.setLength(0);
+                String name = trace.getName(cursor.pid);
+                switch (cursor.kind) {
+                    case BinaryTrace.CREATE:
+                        sb.append("process ").append(name);
+                        for (int size : trace.getSegments(cursor.pid)) {
+                            sb.append(' ').append(size);
+                        }
+                        break;
+                    case BinaryTrace.DESTROY:
+                        sb.append("destroy ").append(name);
+                        break;
+                    default:
+                        sb.append(name).append(' ').append(cursor.segment).append(' ').append(cursor.offset);
+                        if (cursor.kind == BinaryTrace.WRITE) {
+                            sb.append(" W");
+                        }
+                }
+                writer.append(sb).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Usage: java TraceConverter input output
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java TraceConverter input output");
+            System.out.println("       Converts a text trace to a binary trace, or a binary trace to a text trace");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        long start = System.nanoTime();
+        boolean binary = BinaryTrace.isBinaryTrace(input);
+        if (binary) {
+            toText(input, output);
+        } else {
+            toBinary(input, output);
+        }
+        long records;
+        try (BinaryTrace trace = BinaryTrace.open(binary ? input : output)) {
+            records = trace.getRecordCount();
+        }
+        long inputSize = Files.size(input);
+        long outputSize = Files.size(output);
+        System.out.printf("%s to %s: %d records, %d -> %d bytes (%.1f%%) in %.3f s%n",
+                binary ? "Binary" : "Text", binary ? "text" : "binary", records, inputSize, outputSize,
+                inputSize == 0 ? 0.0 : 100.0 * outputSize / inputSize, (System.nanoTime() - start) / 1e9);
+    }
+}
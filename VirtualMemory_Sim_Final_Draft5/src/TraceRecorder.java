@@ -0,0 +1,94 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Records what an OS is asked to do into a binary trace (see OS.setRecorder and BinaryTrace): process creations and
+ * destructions, and the accesses made through toPhysicalAddress and pageReplace, valid or not, in the order they
+ * reach the recorder. A page replacement is recorded as an access to the first byte of the page. Accesses to
+ * processes already destroyed, or created before the recorder was attached, are not recorded.
+ *
+ * Replaying the trace with TraceReplayer makes the same requests again, e.g. under another policy.
+ * All methods can be called from several threads.
+ */
+public class TraceRecorder implements Closeable {
+    private final BinaryTraceWriter writer;
+    private int[] pidOf = new int[16]; // Trace pid of the process holding each handle, -1 if not recorded
+
+    /**
+     * @throws IOException If the trace file cannot be created.
+     */
+    public TraceRecorder(Path path) throws IOException {
+        writer = new BinaryTraceWriter(path);
+        Arrays.fill(pidOf, -1);
+    }
+
+    // Reads --record=path from command line arguments, null if absent
+    public static Path pathFromArgs(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--record=")) {
+                return Paths.get(arg.substring("--record=".length()));
+            }
+        }
+        return null;
+    }
+
+    // Called by the OS before the new process can be accessed
+    synchronized void processCreated(PCB process) {
+        int[] segments = new int[process.STable.length];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = process.STable[i].segmentSize;
+        }
+        if (process.handle >= pidOf.length) {
+            int oldLength = pidOf.length;
+            pidOf = Arrays.copyOf(pidOf, Math.max(oldLength * 2, process.handle + 1));
+            Arrays.fill(pidOf, oldLength, pidOf.length, -1);
+        }
+        try {
+            pidOf[process.handle] = writer.create(process.id, segments);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot record the trace", e);
+        }
+    }
+
+    synchronized void processDestroyed(PCB process) {
+        int pid = process.handle < pidOf.length ? pidOf[process.handle] : -1;
+        if (pid < 0) {
+            return;
+        }
+        pidOf[process.handle] = -1;
+        try {
+            writer.destroy(pid);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot record the trace", e);
+        }
+    }
+
+    synchronized void accessed(PCB process, int segmentNum, int segmentOffset, OS.ACCESS_TYPE type) {
+        int pid = process.alive && process.handle < pidOf.length ? pidOf[process.handle] : -1;
+        if (pid < 0) {
+            return; // A dead process's handle may belong to another process already
+        }
+        try {
+            writer.access(pid, segmentNum, segmentOffset, type == OS.ACCESS_TYPE.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot record the trace", e);
+        }
+    }
+
+    // Records made so far
+    public synchronized long getRecordCount() {
+        return writer.getRecordCount();
+    }
+
+    /**
+     * Finishes the trace file. Detach the recorder from the OS first (OS.setRecorder(null)).
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
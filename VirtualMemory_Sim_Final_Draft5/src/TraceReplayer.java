@@ -0,0 +1,553 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch mode: replays an address trace through OS.toPhysicalAddress without the Shell or the GUI.
+ *
+ * Trace format (one record per line, fields separated by spaces or tabs):
+ *   # comment
+ *   process P1 4096 8192      --> Create process P1 with segments of 4096 and 8192 bytes
+ *   P1 0 1234                 --> Read process P1, segment 0, segment offset 1234
+ *   P1 0 1234 W               --> Write there instead (R or W, case-insensitive; a read if absent)
+ *   destroy P1                --> Destroy process P1
+ *
+ * Binary traces (see BinaryTrace, TraceConverter) are replayed by BinaryTraceReplayer instead.
+ *
+ * The file is memory-mapped window by window and parsed byte by byte, so an access line never builds a String.
+ * A trace is replayed all at once by replay, or line by line as a Workload after open.
+ */
+public class TraceReplayer implements Workload {
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024; // Bytes mapped at a time, traces may be larger than 2GB
+    private static final int MAX_LINE_LENGTH = 4096;
+    private static final byte[] PROCESS_KEYWORD = "process".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DESTROY_KEYWORD = "destroy".getBytes(StandardCharsets.US_ASCII);
+    private static final int DEFAULT_PROCESSES = 4; // Processes of a generated workload, see --processes
+
+    private final OS os;
+    private final PidTable pids = new PidTable();
+    private final byte[] token = new byte[MAX_LINE_LENGTH];
+    private int tokenLength;
+
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer window;
+    private long windowBase;
+    private long lineNumber;
+
+    private long accesses; // Access lines replayed
+    private long rejected; // Access lines the OS refused (unknown process, bad segment or offset)
+    private long elapsedNanos;
+
+    public TraceReplayer(OS os) {
+        this.os = os;
+    }
+
+    /**
+     * Replays every record of the trace file. Statistics of the run are available afterwards through the getters.
+     *
+     * @param trace Path of the trace file.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If a line is malformed.
+     */
+    public void replay(Path trace) throws IOException {
+        long start = System.nanoTime();
+        open(trace);
+        try {
+            while (nextLine()) {
+                parseLine();
+            }
+        } finally {
+            close();
+            elapsedNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Opens the trace file for replay line by line with step.
+     *
+     * @throws IOException If the file cannot be opened.
+     */
+    public void open(Path trace) throws IOException {
+        close();
+        channel = FileChannel.open(trace, StandardOpenOption.READ);
+        fileSize = channel.size();
+        windowBase = 0;
+        window = null;
+        lineNumber = 0;
+    }
+
+    /**
+     * Replays the next line of the open trace file.
+     *
+     * @return False at the end of the file.
+     * @throws IllegalArgumentException If the line is malformed.
+     */
+    @Override
+    public boolean step() throws IOException {
+        if (channel == null || !nextLine()) {
+            return false;
+        }
+        parseLine();
+        return true;
+    }
+
+    // Closes the trace file opened by open, if any
+    @Override
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                EventLog.log(EventLog.Level.ERROR, EventLog.Event.MESSAGE, null, "Cannot close the trace: " + e.getMessage());
+            }
+            channel = null;
+            window = null;
+        }
+    }
+
+    // Positions the window at the start of the next line; returns false at end of file
+    private boolean nextLine() throws IOException {
+        long position = window == null ? 0 : windowBase + window.position();
+        if (position >= fileSize) {
+            return false;
+        }
+        if (window == null || (window.remaining() < MAX_LINE_LENGTH && windowBase + window.limit() < fileSize)) {
+            windowBase = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, fileSize - position));
+        }
+        lineNumber++;
+        return true;
+    }
+
+    private void parseLine() {
+        skipBlanks();
+        if (atEndOfLine()) {
+            skipLine();
+            return;
+        }
+        if (window.get(window.position()) == '#') {
+            skipLine();
+            return;
+        }
+
+        readToken();
+        if (tokenEquals(PROCESS_KEYWORD)) {
+            parseProcess();
+        } else if (tokenEquals(DESTROY_KEYWORD)) {
+            parseDestroy();
+        } else {
+            parseAccess();
+        }
+        skipBlanks();
+        if (!atEndOfLine()) {
+            throw malformed("unexpected trailing field");
+        }
+        skipLine();
+    }
+
+    // process <name> <segment size>...
+    private void parseProcess() {
+        skipBlanks();
+        readToken();
+        if (tokenLength == 0) {
+            throw malformed("missing process name");
+        }
+        String id = new String(token, 0, tokenLength, StandardCharsets.US_ASCII);
+        byte[] name = Arrays.copyOf(token, tokenLength);
+
+        int[] segments = new int[0];
+        skipBlanks();
+        while (!atEndOfLine()) {
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            segments[segments.length - 1] = readInt();
+            skipBlanks();
+        }
+        if (os.createProcess(id, segments)) {
+            pids.put(name, os.getProcesses().get(id));
+        }
+    }
+
+    // destroy <name>
+    private void parseDestroy() {
+        skipBlanks();
+        readToken();
+        if (tokenLength == 0) {
+            throw malformed("missing process name");
+        }
+        os.destroyProcess(new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+        pids.put(Arrays.copyOf(token, tokenLength), null);
+    }
+
+    // <name> <segment number> <segment offset>, the name is already in token
+    private void parseAccess() {
+        PCB process = pids.get(token, tokenLength);
+        skipBlanks();
+        int segmentNum = readInt();
+        skipBlanks();
+        int segmentOffset = readInt();
+        skipBlanks();
+        OS.ACCESS_TYPE type = OS.ACCESS_TYPE.READ;
+        if (!atEndOfLine()) {
+            byte b = window.get();
+            if (b == 'W' || b == 'w') {
+                type = OS.ACCESS_TYPE.WRITE;
+            } else if (b != 'R' && b != 'r') {
+                throw malformed("access type must be R or W");
+            }
+        }
+
+        accesses++;
+        if (process == null || os.toPhysicalAddress(process, segmentNum, segmentOffset, type) < 0) {
+            rejected++;
+        }
+    }
+
+    private void skipBlanks() {
+        while (window.hasRemaining()) {
+            byte b = window.get(window.position());
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return;
+            }
+            window.position(window.position() + 1);
+        }
+    }
+
+    private boolean atEndOfLine() {
+        return !window.hasRemaining() || window.get(window.position()) == '\n';
+    }
+
+    private void skipLine() {
+        while (window.hasRemaining()) {
+            if (window.get() == '\n') {
+                return;
+            }
+        }
+        if (windowBase + window.limit() < fileSize) {
+            throw malformed("line longer than " + MAX_LINE_LENGTH + " bytes");
+        }
+    }
+
+    private void readToken() {
+        tokenLength = 0;
+        while (window.hasRemaining()) {
+            byte b = window.get(window.position());
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                return;
+            }
+            if (tokenLength == token.length) {
+                throw malformed("field longer than " + MAX_LINE_LENGTH + " bytes");
+            }
+            token[tokenLength++] = b;
+            window.position(window.position() + 1);
+        }
+    }
+
+    private boolean tokenEquals(byte[] word) {
+        return tokenLength == word.length && Arrays.equals(token, 0, tokenLength, word, 0, word.length);
+    }
+
+    private int readInt() {
+        long value = 0;
+        int digits = 0;
+        while (window.hasRemaining()) {
+            int d = window.get(window.position()) - '0';
+            if (d < 0 || d > 9) {
+                break;
+            }
+            value = value * 10 + d;
+            if (value > Integer.MAX_VALUE) {
+                throw malformed("number out of range");
+            }
+            digits++;
+            window.position(window.position() + 1);
+        }
+        if (digits == 0) {
+            throw malformed("expected a non-negative integer");
+        }
+        return (int) value;
+    }
+
+    private IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("Malformed trace at line " + lineNumber + ": " + reason);
+    }
+
+    public long getAccesses() {
+        return accesses;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Open-addressing table from process name bytes to PCB, so access lines resolve their process without building a String.
+     */
+    private static class PidTable {
+        private byte[][] keys = new byte[16][];
+        private PCB[] values = new PCB[16];
+        private int size;
+
+        public PCB get(byte[] name, int length) {
+            int mask = keys.length - 1;
+            for (int i = hash(name, length) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (Arrays.equals(keys[i], 0, keys[i].length, name, 0, length)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        public void put(byte[] name, PCB process) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = hash(name, name.length) & mask;
+            while (keys[i] != null) {
+                if (Arrays.equals(keys[i], name)) {
+                    values[i] = process;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = name;
+            values[i] = process;
+            size++;
+        }
+
+        private void resize() {
+            byte[][] oldKeys = keys;
+            PCB[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new PCB[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(byte[] name, int length) {
+            int h = 0x811c9dc5; // FNV-1a
+            for (int i = 0; i < length; i++) {
+                h = (h ^ name[i]) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Usage: java TraceReplayer [--policy=FIFO|LRU|CLOCK|LFU|2Q|ARC] [--scope=local|pff|global] [--pff-window=N] [--readahead=N] [--init-load=eager|demand|hybrid] [--opt] [--record=FILE] [--verbose | --log=LEVEL] [memory options] traceFile
+     *        java TraceReplayer [same options] [--threads=N] binaryTraceFile
+     *        java TraceReplayer [same options] --workload=uniform|zipf|scan|loop|phased [--processes=N] [workload options]
+     * Memory options set the geometry, e.g. --memory=1G --page=4K (see MemoryConfig.fromArgs).
+     * Text and binary traces are told apart by their first bytes. --threads=N replays a binary trace with N threads,
+     * each taking a run of its blocks (see BinaryTraceReplayer.replayParallel).
+     * --record=FILE writes the requests the OS receives to a binary trace (see TraceRecorder).
+     * --workload runs a synthetic workload instead of a trace, over N processes (4 by default) with the largest
+     * segments the geometry allows; workload options set its seed, length and parameters (see WorkloadSpec.fromArgs).
+     * --scope=global lets a page fault evict a page of any process, --scope=pff sizes each resident set by its
+     * page fault frequency (see OS.REPLACE_SCOPE).
+     * --readahead=N loads up to N pages after a sequential page fault (see ReadAhead).
+     * --init-load sets what a new process loads before its first access (see OS.INIT_LOAD), eager by default.
+     * --opt replays the trace a second time with optimal (Belady) replacement and fixed local resident sets, and
+     * reports its faults as the lower bound for the --resident limit.
+     * OS events are off by default; --verbose logs every translation (same as --log=DEBUG).
+     */
+    public static void main(String[] args) throws IOException {
+        String file = null;
+        boolean verbose = false;
+        boolean opt = false;
+        boolean generate = false;
+        int processCount = DEFAULT_PROCESSES;
+        int threads = 1;
+        for (String arg : args) {
+            if (arg.startsWith("--policy=")) {
+                OS.setReplacePolicy(OS.REPLACE_POLICY.parse(arg.substring("--policy=".length())));
+            } else if (arg.equals("--verbose")) {
+                verbose = true;
+            } else if (arg.equals("--opt")) {
+                opt = true;
+            } else if (arg.startsWith("--processes=")) {
+                processCount = Integer.parseInt(arg.substring("--processes=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Math.max(1, Integer.parseInt(arg.substring("--threads=".length())));
+            } else if (WorkloadSpec.isOption(arg)) {
+                generate |= arg.startsWith("--workload=");
+            } else if (MemoryConfig.isOption(arg) || arg.startsWith("--log=") || arg.startsWith("--scope=") || arg.startsWith("--pff-window=")
+                    || arg.startsWith("--readahead=") || arg.startsWith("--init-load=") || arg.startsWith("--record=")) {
+                continue;
+            } else {
+                file = arg;
+            }
+        }
+        if (file == null && !generate) {
+            System.out.println("Usage: java TraceReplayer [--policy=FIFO|LRU|CLOCK|LFU|2Q|ARC] [--scope=local|pff|global] [--pff-window=N] [--readahead=N] [--init-load=eager|demand|hybrid] [--opt] [--record=FILE] [--verbose | --log=LEVEL] [memory options] traceFile");
+            System.out.println("       java TraceReplayer [same options] [--threads=N] binaryTraceFile");
+            System.out.println("       java TraceReplayer [same options] --workload=" + WorkloadGenerator.LOCALITY.labels() + " [--processes=N] [--seed=N] [--accesses=N] [--writes=F] [--zipf-theta=F] [--working-set=N] [--phase=N]");
+            return;
+        }
+        EventLog.configure(args, verbose ? EventLog.Level.DEBUG : EventLog.Level.OFF);
+
+        OS os = new OS(MemoryConfig.fromArgs(args), OS.REPLACE_SCOPE.fromArgs(args));
+        os.setPffWindow(OS.pffWindowFromArgs(args));
+        os.setReadAhead(OS.readAheadFromArgs(args));
+        os.setInitLoad(OS.INIT_LOAD.fromArgs(args));
+        os.setRecordReferences(opt);
+        Path recordPath = TraceRecorder.pathFromArgs(args);
+        TraceRecorder recorder = recordPath == null ? null : new TraceRecorder(recordPath);
+        os.setRecorder(recorder);
+        WorkloadSpec spec = generate ? WorkloadSpec.fromArgs(args) : null;
+        List<String> workloadProcesses = new ArrayList<>(); // Processes the workload was generated over, in order
+        if (generate) {
+            List<String> names = new ArrayList<>();
+            for (int p = 0; p < processCount; p++) {
+                names.add("P" + p);
+            }
+            List<PCB> processes = createProcesses(os, names);
+            for (PCB process : processes) {
+                workloadProcesses.add(process.id);
+            }
+            WorkloadGenerator generator = new WorkloadGenerator(os, processes, spec);
+            System.out.println("Workload: " + spec + ", " + processCount + " processes");
+            long start = System.nanoTime();
+            while (generator.step()) {
+            }
+            long elapsed = System.nanoTime() - start;
+            EventLog.flush();
+            printReport(os, generator.getAccesses(), generator.getRejected(), elapsed);
+        } else if (BinaryTrace.isBinaryTrace(Paths.get(file))) {
+            try (BinaryTrace trace = BinaryTrace.open(Paths.get(file))) {
+                BinaryTraceReplayer replayer = new BinaryTraceReplayer(os, trace);
+                long start = System.nanoTime();
+                if (threads > 1) {
+                    replayer.replayParallel(threads);
+                } else {
+                    while (replayer.step()) {
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                EventLog.flush();
+                printReport(os, replayer.getAccesses(), replayer.getRejected(), elapsed);
+            }
+        } else {
+            TraceReplayer replayer = new TraceReplayer(os);
+            replayer.replay(Paths.get(file));
+            EventLog.flush();
+            printReport(os, replayer.getAccesses(), replayer.getRejected(), replayer.getElapsedNanos());
+        }
+        if (recorder != null) {
+            os.setRecorder(null);
+            recorder.close();
+            System.out.println("Recorded " + recorder.getRecordCount() + " records to " + recordPath);
+        }
+        os.close();
+        if (opt) {
+            replayOptimal(os, generate ? null : Paths.get(file), spec, workloadProcesses);
+        }
+    }
+
+    // Creates the named processes, each with the largest segments the geometry allows; returns those created, in order
+    private static List<PCB> createProcesses(OS os, List<String> names) {
+        MemoryConfig config = os.getConfig();
+        int[] segments = new int[config.maxSegmentNum];
+        Arrays.fill(segments, config.maxSegmentSize);
+        List<PCB> processes = new ArrayList<>();
+        for (String name : names) {
+            if (os.createProcess(name, segments)) {
+                processes.add(os.getProcesses().get(name));
+            }
+        }
+        return processes;
+    }
+
+    // Replays the trace (or the generated workload over the given processes, if spec is not null) again on a fresh OS
+    // of the same geometry, every process replacing pages optimally within a fixed resident set using the references
+    // recorded in the first run, and reports the faults next to those of the first run. The bound holds for local
+    // replacement; PFF and global replacement may beat it by moving frames. A workload is only replayed if all its
+    // processes fit with local replacement, since the same seed makes the same accesses only over the same processes.
+    private static void replayOptimal(OS recorded, Path file, WorkloadSpec spec, List<String> workloadProcesses) throws IOException {
+        Map<String, List<OptTrace>> traces = recorded.getOptTraces();
+        long faults = recorded.getPageFault();
+
+        OS optimal = new OS(recorded.getConfig());
+        optimal.setInitLoad(recorded.getInitLoad());
+        optimal.setOptTraces(traces);
+        if (spec != null) {
+            List<PCB> processes = createProcesses(optimal, workloadProcesses);
+            if (processes.size() < workloadProcesses.size()) {
+                optimal.close();
+                System.out.println("OPT lower bound skipped: only " + processes.size() + " of the " + workloadProcesses.size()
+                        + " processes of the workload fit in memory with local replacement");
+                return;
+            }
+            WorkloadGenerator generator = new WorkloadGenerator(optimal, processes, spec);
+            while (generator.step()) {
+            }
+        } else if (BinaryTrace.isBinaryTrace(file)) {
+            try (BinaryTrace trace = BinaryTrace.open(file)) {
+                BinaryTraceReplayer replayer = new BinaryTraceReplayer(optimal, trace);
+                while (replayer.step()) {
+                }
+            }
+        } else {
+            new TraceReplayer(optimal).replay(file);
+        }
+        optimal.close();
+        EventLog.flush();
+
+        long optFaults = optimal.getPageFault();
+        long requests = optimal.getTotalRequest();
+        System.out.printf("OPT lower bound (local replacement): %d page faults, miss ratio: %.4f (%s %s: %+.1f%% faults)%n",
+                optFaults, requests == 0 ? 0.0 : (double) optFaults / requests, OS.ReplacePolicy.label(),
+                recorded.getScope().name().toLowerCase(), optFaults == 0 ? 0.0 : 100.0 * (faults - optFaults) / optFaults);
+    }
+
+    static void printReport(OS os, long accesses, long rejected, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long requests = os.getTotalRequest();
+        long faults = os.getPageFault();
+        System.out.println("Replacement policy: " + OS.ReplacePolicy.label() + " (" + os.getScope().name().toLowerCase() + ")");
+        System.out.printf("Accesses: %d (%d rejected) in %.3f s, %.0f requests/sec%n",
+                accesses, rejected, seconds, accesses / Math.max(seconds, 1e-9));
+        System.out.printf("Page faults: %d, miss ratio: %.4f%n", faults, requests == 0 ? 0.0 : (double) faults / requests);
+        StatsSnapshot stats = os.getStats();
+        System.out.println("Fault service time: " + stats.faultTime);
+        System.out.printf("Evictions: %d clean (dropped), %d dirty (written back)%n",
+                stats.total(ProcessStats.Counter.CLEAN_EVICTIONS), stats.total(ProcessStats.Counter.DIRTY_EVICTIONS));
+        if (stats.total(ProcessStats.Counter.PREFETCHES) > 0) {
+            System.out.println(stats.formatReadAhead());
+        }
+        Tlb tlb = os.getTlb();
+        System.out.printf("TLB (%d entries, %d-way): %d hits, %d misses, hit ratio: %.4f%n",
+                tlb.size(), tlb.getWays(), tlb.getHits(), tlb.getMisses(), tlb.getHitRatio());
+        SwapFile swap = os.getSwap();
+        if (swap != null) {
+            System.out.printf("Swap file: %d pages read, %d pages written in %d writes%n",
+                    swap.getReads(), swap.getWrites(), swap.getWriteOps());
+            PageOutQueue queue = os.getPageOutQueue();
+            if (queue != null) {
+                System.out.printf("Page-out queue: %d flushes, %d page-ins served from the queue, %d rewrites absorbed, %d pages pending%n",
+                        queue.getFlushes(), queue.getQueueHits(), queue.getAbsorbed(), queue.size());
+            }
+        }
+        for (PCB process : os.getAllActivePCBs()) {
+            System.out.printf("  Process %s: %d resident frames, %d page faults%n",
+                    process.id, process.residentSetCount, process.stats.total(ProcessStats.Counter.FAULTS));
+        }
+    }
+}
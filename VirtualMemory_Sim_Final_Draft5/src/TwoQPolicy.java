@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/**
+ * 2Q (Johnson and Shasha): a page seen once enters a small FIFO queue A1in. When it is evicted from there its key
+ * is remembered in a ghost queue A1out, and only a page that faults again while remembered is admitted to the main
+ * LRU queue Am. A sequential scan therefore passes through A1in without flushing the frequently used pages in Am.
+ * A1in is kept to about a quarter of the resident set and A1out remembers about half as many pages.
+ */
+public class TwoQPolicy implements ReplacementPolicy {
+    private final LruList a1in = new LruList(0); // Touched only on load, so its eldest slot is the first one in
+    private final LruList am = new LruList(0);
+    private final GhostList a1out;
+    private int[] slotKey;
+    private int capacity;
+    private int kin; // Target size of A1in
+
+    public TwoQPolicy(int capacity) {
+        this.capacity = capacity;
+        slotKey = new int[capacity];
+        a1out = new GhostList(0);
+        resize();
+    }
+
+    @Override
+    public void onLoad(int slot, int pageKey) {
+        if (slot >= capacity) {
+            capacity = slot + 1;
+            if (capacity > slotKey.length) {
+                slotKey = Arrays.copyOf(slotKey, Math.max(capacity, slotKey.length * 2));
+            }
+            resize();
+        }
+        slotKey[slot] = pageKey;
+        if (a1out.remove(pageKey)) {
+            am.touch(slot);
+        } else {
+            a1in.touch(slot);
+        }
+    }
+
+    @Override
+    public void onHit(int slot) {
+        if (am.contains(slot)) {
+            am.touch(slot);
+        }
+    }
+
+    @Override
+    public void onEvict(int slot) {
+        if (a1in.contains(slot)) {
+            a1in.remove(slot);
+            a1out.add(slotKey[slot]);
+        } else {
+            am.remove(slot);
+        }
+    }
+
+    @Override
+    public int selectVictim(int incomingKey) {
+        if (a1in.size() > kin || am.size() == 0) {
+            return a1in.eldest();
+        }
+        return am.eldest();
+    }
+
+    private void resize() {
+        kin = Math.max(1, capacity / 4);
+        a1out.ensureCapacity(Math.max(1, capacity / 2));
+    }
+}
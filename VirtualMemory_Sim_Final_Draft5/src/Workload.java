@@ -0,0 +1,21 @@
+import java.io.Closeable;
+
+/**
+ * A stream of records driving an OS one at a time: accesses, and possibly process creations. Trace files
+ * (TraceReplayer) are workloads, and so is anything else AutoRunner should run.
+ */
+public interface Workload extends Closeable {
+
+    /**
+     * Performs the next record of the workload on its OS.
+     *
+     * @return False if the workload is exhausted, in which case nothing was performed.
+     * @throws java.io.IOException If the workload cannot be read.
+     */
+    boolean step() throws java.io.IOException;
+
+    // Releases what the workload reads from; it cannot step afterwards
+    @Override
+    default void close() {
+    }
+}
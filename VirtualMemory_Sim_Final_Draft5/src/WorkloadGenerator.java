@@ -0,0 +1,187 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Synthetic workload: a stream of accesses to the pages of a fixed set of processes, made through
+ * OS.toPhysicalAddress. Each access picks a process at random, then a page of it according to the locality model,
+ * a random offset in that page, and a read or a write. The stream depends only on the spec (see WorkloadSpec), so the
+ * same seed replays the same accesses against another policy or scope. Steps allocate nothing.
+ *
+ * Accesses to a process destroyed meanwhile are rejected by the OS and counted (see getRejected).
+ */
+public class WorkloadGenerator implements Workload {
+
+    //How the page of each access is chosen, within the pages of its process (PCB.virtualPage):
+    //UNIFORM: any page. ZIPF: a few pages take most accesses, the popularity of the page of rank r falling as 1/r^theta;
+    //the ranks are scattered over the process's segments. SCAN: the pages in order, over and over.
+    //LOOP: the pages of a working set in order, over and over. PHASED: any page of a working set, which moves to
+    //another part of the process after each phase.
+    public static enum LOCALITY {
+        UNIFORM, ZIPF, SCAN, LOOP, PHASED;
+
+        public static LOCALITY parse(String name) {
+            for (LOCALITY locality : values()) {
+                if (locality.name().equalsIgnoreCase(name.trim())) {
+                    return locality;
+                }
+            }
+            throw new IllegalArgumentException("Unknown workload: " + name + " (use one of " + labels() + ")");
+        }
+
+        public static String labels() {
+            StringBuilder sb = new StringBuilder();
+            for (LOCALITY locality : values()) {
+                sb.append(sb.length() == 0 ? "" : "|").append(locality.name().toLowerCase());
+            }
+            return sb.toString();
+        }
+    };
+
+    private static final long SCATTER = 2654435761L; // Prime larger than any page count: rank * SCATTER mod n is a permutation
+
+    private final OS os;
+    private final WorkloadSpec spec;
+    private final SplitMix64 random;
+    private final PCB[] processes;
+    private final int pageSize;
+
+    // State of each process, by index in processes
+    private final int[] workingSet; // LOOP, PHASED: pages in the working set, at most the process's pages
+    private final int[] base;       // LOOP, PHASED: first page of the working set
+    private final int[] cursor;     // SCAN, LOOP: next page, relative to base
+    private final long[] phaseLeft; // PHASED: accesses left before the working set moves
+    private final double[] zetaN;   // ZIPF: sum of 1/i^theta over the pages of the process
+    private final double[] eta;     // ZIPF: constant of the inverse transform, see zipfRank
+
+    private final double alpha;     // ZIPF: 1 / (1 - theta)
+    private final double zeta2;     // ZIPF: 1 + 1/2^theta
+
+    private long accesses;
+    private long rejected;
+
+    /**
+     * @param os The OS the accesses are made to.
+     * @param processes The processes to access, each picked equally often.
+     * @param spec The locality model, seed, length and write ratio of the workload.
+     */
+    public WorkloadGenerator(OS os, Collection<PCB> processes, WorkloadSpec spec) {
+        this.os = os;
+        this.spec = spec;
+        this.random = new SplitMix64(spec.seed);
+        this.processes = processes.toArray(new PCB[0]);
+        this.pageSize = os.getConfig().pageSize;
+
+        int n = this.processes.length;
+        workingSet = new int[n];
+        base = new int[n];
+        cursor = new int[n];
+        phaseLeft = new long[n];
+        zetaN = new double[n];
+        eta = new double[n];
+        double theta = spec.zipfTheta;
+        alpha = 1 / (1 - theta);
+        zeta2 = 1 + Math.pow(0.5, theta);
+
+        Map<Integer, Double> zetas = new HashMap<>(); // Processes often have the same number of pages
+        for (int i = 0; i < n; i++) {
+            int pages = this.processes[i].pageCount;
+            workingSet[i] = Math.min(spec.workingSet, pages);
+            base[i] = pages == 0 ? 0 : random.nextInt(pages);
+            phaseLeft[i] = spec.phaseLength;
+            if (spec.locality == LOCALITY.ZIPF && pages > 0) {
+                zetaN[i] = zetas.computeIfAbsent(pages, p -> zeta(p, theta));
+                eta[i] = (1 - Math.pow(2.0 / pages, 1 - theta)) / (1 - zeta2 / zetaN[i]);
+            }
+        }
+    }
+
+    /**
+     * Makes the next access, unless the spec's access count is reached or there are no processes.
+     */
+    @Override
+    public boolean step() {
+        if (accesses >= spec.accesses || processes.length == 0) {
+            return false;
+        }
+        accesses++;
+        int i = random.nextInt(processes.length);
+        PCB process = processes[i];
+        if (process.pageCount == 0) {
+            rejected++;
+            return true;
+        }
+        int virtualPage = nextPage(i, process.pageCount);
+
+        int s = process.segmentOf(virtualPage);
+        int pageStart = (virtualPage - process.STable[s].firstPage) * pageSize;
+        int offset = pageStart + random.nextInt(Math.min(pageSize, process.STable[s].segmentSize - pageStart));
+        OS.ACCESS_TYPE type = spec.writeRatio > 0 && random.nextDouble() < spec.writeRatio ? OS.ACCESS_TYPE.WRITE : OS.ACCESS_TYPE.READ;
+        if (os.toPhysicalAddress(process, s, offset, type) < 0) {
+            rejected++;
+        }
+        return true;
+    }
+
+    // The virtual page of the next access to the process at index i, which has the given number of pages
+    private int nextPage(int i, int pages) {
+        switch (spec.locality) {
+            case ZIPF:
+                return (int) (zipfRank(i, pages) * SCATTER % pages);
+            case SCAN: {
+                int page = cursor[i];
+                cursor[i] = page + 1 == pages ? 0 : page + 1;
+                return page;
+            }
+            case LOOP: {
+                int page = cursor[i];
+                cursor[i] = page + 1 == workingSet[i] ? 0 : page + 1;
+                return (base[i] + page) % pages;
+            }
+            case PHASED:
+                if (--phaseLeft[i] < 0) {
+                    phaseLeft[i] = spec.phaseLength - 1;
+                    base[i] = random.nextInt(pages);
+                }
+                return (base[i] + random.nextInt(workingSet[i])) % pages;
+            default:
+                return random.nextInt(pages);
+        }
+    }
+
+    // Rank drawn from a Zipf distribution over the pages, 0 the most popular, by the inverse transform of Gray et al.,
+    // "Quickly generating billion-record synthetic databases"
+    private int zipfRank(int i, int pages) {
+        double u = random.nextDouble();
+        double uz = u * zetaN[i];
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < zeta2) {
+            return Math.min(1, pages - 1);
+        }
+        int rank = (int) (pages * Math.pow(eta[i] * u - eta[i] + 1, alpha));
+        return Math.min(rank, pages - 1);
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    // Accesses made so far, and those the OS refused
+    public long getAccesses() {
+        return accesses;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public WorkloadSpec getSpec() {
+        return spec;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Parameters of a synthetic workload (see WorkloadGenerator), read from the command line by fromArgs.
+ */
+public class WorkloadSpec {
+
+    public static final WorkloadSpec DEFAULT = new WorkloadSpec(WorkloadGenerator.LOCALITY.UNIFORM, 42, 100_000, 0, 0.99, 16, 5_000);
+
+    public final WorkloadGenerator.LOCALITY locality; //How the accessed pages are chosen
+    public final long seed;                           //Seed of the generator: the same seed gives the same accesses
+    public final long accesses;                       //Accesses made before the workload is exhausted
+    public final double writeRatio;                   //Fraction of the accesses that are writes
+    public final double zipfTheta;                    //ZIPF: skew, between 0 (uniform) and 1 (exclusive)
+    public final int workingSet;                      //LOOP and PHASED: pages in each process's working set
+    public final long phaseLength;                    //PHASED: accesses of a process before its working set moves
+
+    public WorkloadSpec(WorkloadGenerator.LOCALITY locality, long seed, long accesses, double writeRatio, double zipfTheta,
+                        int workingSet, long phaseLength) {
+        if (accesses < 0) {
+            throw new IllegalArgumentException("Access count must not be negative: " + accesses);
+        }
+        if (writeRatio < 0 || writeRatio > 1) {
+            throw new IllegalArgumentException("Write ratio must be between 0 and 1: " + writeRatio);
+        }
+        if (zipfTheta <= 0 || zipfTheta >= 1) {
+            throw new IllegalArgumentException("Zipf skew must be between 0 and 1 (exclusive): " + zipfTheta);
+        }
+        if (workingSet <= 0 || phaseLength <= 0) {
+            throw new IllegalArgumentException("Working set and phase length must be positive");
+        }
+        this.locality = locality;
+        this.seed = seed;
+        this.accesses = accesses;
+        this.writeRatio = writeRatio;
+        this.zipfTheta = zipfTheta;
+        this.workingSet = workingSet;
+        this.phaseLength = phaseLength;
+    }
+
+    // The same workload with another locality model, seed and access count
+    public WorkloadSpec with(WorkloadGenerator.LOCALITY locality, long seed, long accesses) {
+        return new WorkloadSpec(locality, seed, accesses, writeRatio, zipfTheta, workingSet, phaseLength);
+    }
+
+    /**
+     * Builds a workload from command line arguments, using DEFAULT for any option not given:
+     *   --workload=uniform|zipf|scan|loop|phased --seed=42 --accesses=100000 --writes=0.25
+     *   --zipf-theta=0.99 --working-set=16 --phase=5000
+     *
+     * @throws IllegalArgumentException If an option value is invalid.
+     */
+    public static WorkloadSpec fromArgs(String[] args) {
+        WorkloadGenerator.LOCALITY locality = DEFAULT.locality;
+        long seed = DEFAULT.seed;
+        long accesses = DEFAULT.accesses;
+        double writeRatio = DEFAULT.writeRatio;
+        double zipfTheta = DEFAULT.zipfTheta;
+        int workingSet = DEFAULT.workingSet;
+        long phaseLength = DEFAULT.phaseLength;
+
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--workload=")) {
+                locality = WorkloadGenerator.LOCALITY.parse(value);
+            } else if (arg.startsWith("--seed=")) {
+                seed = parseLong(value, arg);
+            } else if (arg.startsWith("--accesses=")) {
+                accesses = parseLong(value, arg);
+            } else if (arg.startsWith("--writes=")) {
+                writeRatio = parseDouble(value, arg);
+            } else if (arg.startsWith("--zipf-theta=")) {
+                zipfTheta = parseDouble(value, arg);
+            } else if (arg.startsWith("--working-set=")) {
+                workingSet = (int) Math.min(Integer.MAX_VALUE, parseLong(value, arg));
+            } else if (arg.startsWith("--phase=")) {
+                phaseLength = parseLong(value, arg);
+            }
+        }
+        return new WorkloadSpec(locality, seed, accesses, writeRatio, zipfTheta, workingSet, phaseLength);
+    }
+
+    /**
+     * Returns whether the argument is one of the options read by fromArgs.
+     */
+    public static boolean isOption(String arg) {
+        return arg.startsWith("--workload=") || arg.startsWith("--seed=") || arg.startsWith("--accesses=")
+                || arg.startsWith("--writes=") || arg.startsWith("--zipf-theta=") || arg.startsWith("--working-set=")
+                || arg.startsWith("--phase=");
+    }
+
+    private static long parseLong(String value, String arg) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + arg);
+        }
+    }
+
+    private static double parseDouble(String value, String arg) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + arg);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String detail;
+        switch (locality) {
+            case ZIPF:
+                detail = ", skew " + zipfTheta;
+                break;
+            case LOOP:
+                detail = ", loops of " + workingSet + " pages";
+                break;
+            case PHASED:
+                detail = ", working sets of " + workingSet + " pages moving every " + phaseLength + " accesses";
+                break;
+            default:
+                detail = "";
+        }
+        return locality.name().toLowerCase() + " workload" + detail + ", " + accesses + " accesses, "
+                + Math.round(writeRatio * 100) + "% writes, seed " + seed;
+    }
+}